@@ -0,0 +1,88 @@
+package com.iconloop.score.pds;
+
+import score.Context;
+import score.ObjectReader;
+import score.ObjectWriter;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * AuthRecord is the denormalized form of a policy for is_authorized.
+ * The effective expiry is computed with the label at the label version, so it is valid
+ * only while the label version is not changed.
+ */
+public class AuthRecord {
+    private final String label_id;
+    // keccak-256 of the consumer, or null for a group policy
+    private final byte[] consumer_hash;
+    private final BigInteger policy_expire_at;
+    // min(policy_expire_at, the expire_at of the label)
+    private final BigInteger expire_at;
+    private final long label_version;
+    // the label group of the label, whose expiration is checked on every query
+    private final String label_group;
+
+    public AuthRecord(String labelId, byte[] consumerHash, BigInteger policyExpireAt, BigInteger expireAt,
+                      long labelVersion, String labelGroup) {
+        this.label_id = labelId;
+        this.consumer_hash = consumerHash;
+        this.policy_expire_at = policyExpireAt;
+        this.expire_at = expireAt;
+        this.label_version = labelVersion;
+        this.label_group = labelGroup;
+    }
+
+    public String getLabel_id() {
+        return label_id;
+    }
+
+    public byte[] getConsumer_hash() {
+        return consumer_hash;
+    }
+
+    public BigInteger getPolicy_expire_at() {
+        return policy_expire_at;
+    }
+
+    public BigInteger getExpire_at() {
+        return expire_at;
+    }
+
+    public long getLabel_version() {
+        return label_version;
+    }
+
+    public String getLabel_group() {
+        return label_group;
+    }
+
+    public boolean isGroup() {
+        return consumer_hash == null;
+    }
+
+    public boolean isConsumer(String consumer) {
+        return Arrays.equals(consumer_hash, hashOf(consumer));
+    }
+
+    public static byte[] hashOf(String consumer) {
+        return Context.hash("keccak-256", consumer.getBytes());
+    }
+
+    public static void writeObject(ObjectWriter w, AuthRecord a) {
+        w.writeListOfNullable(a.label_id, a.consumer_hash, a.policy_expire_at, a.expire_at, a.label_version, a.label_group);
+    }
+
+    public static AuthRecord readObject(ObjectReader r) {
+        r.beginList();
+        AuthRecord a = new AuthRecord(
+                r.readString(),
+                r.readNullable(byte[].class),
+                r.readBigInteger(),
+                r.readBigInteger(),
+                r.readLong(),
+                r.hasNext() ? r.readNullable(String.class) : null);
+        r.end();
+        return a;
+    }
+}
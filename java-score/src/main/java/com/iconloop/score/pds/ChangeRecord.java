@@ -0,0 +1,56 @@
+package com.iconloop.score.pds;
+
+import score.ObjectReader;
+import score.ObjectWriter;
+
+public class ChangeRecord {
+    public static final int TYPE_LABEL = 0;
+    public static final int TYPE_POLICY = 1;
+    public static final int TYPE_NODE = 2;
+    public static final int TYPE_GROUP = 3;
+
+    private final int type;
+    private final String id;
+    private final long height;
+
+    public ChangeRecord(int type, String id, long height) {
+        this.type = type;
+        this.id = id;
+        this.height = height;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getHeight() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeRecord{" +
+                "type=" + type +
+                ", id='" + id + '\'' +
+                ", height=" + height +
+                '}';
+    }
+
+    public static void writeObject(ObjectWriter w, ChangeRecord c) {
+        w.writeListOf(c.type, c.id, c.height);
+    }
+
+    public static ChangeRecord readObject(ObjectReader r) {
+        r.beginList();
+        ChangeRecord c = new ChangeRecord(
+                r.readInt(),
+                r.readString(),
+                r.readLong());
+        r.end();
+        return c;
+    }
+}
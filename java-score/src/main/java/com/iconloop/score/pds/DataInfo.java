@@ -9,11 +9,18 @@ public class DataInfo {
     private final String data_id;
     private final String name;
     private final BigInteger size;
+    // the number of the chunks if the data_id is the root of a manifest, or zero for a single content
+    private final int chunk_count;
 
     public DataInfo(String dataId, String name, BigInteger size) {
+        this(dataId, name, size, 0);
+    }
+
+    public DataInfo(String dataId, String name, BigInteger size, int chunkCount) {
         this.data_id = dataId;
         this.name = name;
         this.size = size;
+        this.chunk_count = chunkCount;
     }
 
     public String getData_id() {
@@ -28,17 +35,31 @@ public class DataInfo {
         return size;
     }
 
+    public int getChunk_count() {
+        return chunk_count;
+    }
+
+    public boolean isManifest() {
+        return chunk_count > 0;
+    }
+
     @Override
     public String toString() {
         return "DataInfo{" +
                 "data_id='" + data_id + '\'' +
                 ", name='" + name + '\'' +
                 ", size=" + size +
+                ", chunk_count=" + chunk_count +
                 '}';
     }
 
     public static void writeObject(ObjectWriter w, DataInfo d) {
-        w.writeListOf(d.data_id, d.name, d.size);
+        // the chunk_count is written only for the manifests to keep the single contents small
+        if (d.isManifest()) {
+            w.writeListOf(d.data_id, d.name, d.size, d.chunk_count);
+        } else {
+            w.writeListOf(d.data_id, d.name, d.size);
+        }
     }
 
     public static DataInfo readObject(ObjectReader r) {
@@ -46,7 +67,8 @@ public class DataInfo {
         DataInfo d = new DataInfo(
                 r.readString(),
                 r.readString(),
-                r.readBigInteger());
+                r.readBigInteger(),
+                r.hasNext() ? r.readInt() : 0);
         r.end();
         return d;
     }
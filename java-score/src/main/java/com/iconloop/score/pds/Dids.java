@@ -0,0 +1,20 @@
+package com.iconloop.score.pds;
+
+import com.parametacorp.util.InternTable;
+
+/**
+ * Dids interns the DIDs (and did#kid) stored in the label and policy records.
+ */
+final class Dids {
+    private static final String TABLE_ID = "dids";
+
+    private Dids() {}
+
+    static long intern(String did) {
+        return (did != null) ? new InternTable(TABLE_ID).intern(did) : 0;
+    }
+
+    static String resolve(long id) {
+        return (id != 0) ? new InternTable(TABLE_ID).resolve(id) : null;
+    }
+}
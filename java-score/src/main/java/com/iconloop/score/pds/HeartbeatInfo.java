@@ -0,0 +1,67 @@
+package com.iconloop.score.pds;
+
+import score.ObjectReader;
+import score.ObjectWriter;
+
+import java.math.BigInteger;
+
+/**
+ * HeartbeatInfo keeps the heartbeats of a word of WORD_BITS node slots in an epoch as bitmaps,
+ * instead of a record per node.
+ */
+public class HeartbeatInfo {
+    // number of the slots in a word
+    static final int WORD_BITS = 256;
+
+    private final long epoch;
+    private BigInteger alive;
+    private BigInteger saturated;
+
+    public HeartbeatInfo(long epoch) {
+        this(epoch, BigInteger.ZERO, BigInteger.ZERO);
+    }
+
+    private HeartbeatInfo(long epoch, BigInteger alive, BigInteger saturated) {
+        this.epoch = epoch;
+        this.alive = alive;
+        this.saturated = saturated;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public boolean isAlive(int slot) {
+        return alive.testBit(slot % WORD_BITS);
+    }
+
+    public boolean isSaturated(int slot) {
+        return saturated.testBit(slot % WORD_BITS);
+    }
+
+    public void mark(int slot, boolean saturated) {
+        int bit = slot % WORD_BITS;
+        this.alive = this.alive.setBit(bit);
+        this.saturated = saturated ? this.saturated.setBit(bit) : this.saturated.clearBit(bit);
+    }
+
+    public void clear(int slot) {
+        int bit = slot % WORD_BITS;
+        this.alive = this.alive.clearBit(bit);
+        this.saturated = this.saturated.clearBit(bit);
+    }
+
+    public static void writeObject(ObjectWriter w, HeartbeatInfo h) {
+        w.writeListOf(h.epoch, h.alive, h.saturated);
+    }
+
+    public static HeartbeatInfo readObject(ObjectReader r) {
+        r.beginList();
+        HeartbeatInfo h = new HeartbeatInfo(
+                r.readLong(),
+                r.readBigInteger(),
+                r.readBigInteger());
+        r.end();
+        return h;
+    }
+}
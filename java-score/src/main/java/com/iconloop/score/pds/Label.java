@@ -4,6 +4,7 @@ import score.annotation.EventLog;
 import score.annotation.Optional;
 
 import java.math.BigInteger;
+import java.util.Map;
 
 public interface Label {
     /**
@@ -36,6 +37,7 @@ public interface Label {
 
     /**
      * Removes an existing label.
+     * The data shared with the other labels of the owner remain pinned until the last of them is removed.
      *
      * @param label_id The ID of the label to be removed.
      * @param owner_sign The owner's signature authorizing the label removal.
@@ -68,6 +70,62 @@ public interface Label {
                       @Optional String producer,
                       @Optional BigInteger producer_expire_at);
 
+    /**
+     * Compacts the revoked labels into tombstones which keep only the label_id, the owner and the revoked height.
+     * A label can be compacted once the grace period has passed since it was revoked.
+     * Anyone can call this, and the labels not eligible for compaction are skipped.
+     * The data entries of the labels are deleted as well, up to a limited number of entries per call,
+     * so a label with many entries may need several calls to be compacted.
+     *
+     * @param label_ids The IDs of the labels to be compacted.
+     */
+    void compact_labels(String[] label_ids);
+
+    /**
+     * Registers the labels added before the label registry, so that they are included in {@link #export_labels}.
+     * Anyone can call this, and the unknown or already registered label IDs are skipped.
+     *
+     * @param label_ids The IDs of the labels to be registered, e.g. collected from the LabelAdded events.
+     */
+    void register_labels(String[] label_ids);
+
+    /**
+     * Exports a page of the registered labels in the order of addition, including the revoked ones.
+     * This allows a new replica to take a snapshot of the labels in parallel chunks instead of replaying the events.
+     *
+     * @param cursor (Optional) The cursor returned with the previous page, or 0 for the first page.
+     * @param limit (Optional) The maximum number of items to return.
+     *
+     * @return A paginated result containing the labels with the number of their policies and data,
+     *         and the cursor of the next page, which is 0 if there are no more labels.
+     */
+    PageOfLabel export_labels(@Optional long cursor,
+                              @Optional int limit);
+
+    /**
+     * Migrates the data entries of a label added before the indexed data storage, which stores each entry
+     * together with its position. The entries are migrated up to a limited number of entries per call,
+     * so a label with many entries may need several calls. Anyone can call this, and the labels already
+     * migrated are left as is.
+     *
+     * @param label_id The ID of the label to be migrated.
+     */
+    void migrate_label_data(String label_id);
+
+    /**
+     * Sets the number of blocks after which a revoked label can be compacted.
+     *
+     * @param period The grace period in blocks.
+     */
+    void set_compaction_grace_period(BigInteger period);
+
+    /**
+     * Retrieves the number of blocks after which a revoked label can be compacted.
+     *
+     * @return The grace period in blocks, or null if the compaction is disabled.
+     */
+    BigInteger get_compaction_grace_period();
+
     /**
      * Retrieves the details of a label.
      *
@@ -75,6 +133,7 @@ public interface Label {
      *
      * @return A map containing the label's details as key-value pairs.
      *         Returns an empty map if the label is not found.
+     *         A compacted label has only the label_id, the owner and the revoked height (revoked_at).
      */
     LabelInfo get_label(String label_id);
 
@@ -87,12 +146,16 @@ public interface Label {
 
     /**
      * Adds data associated with a given label.
+     * A content split into many chunks can be added as a manifest, which is a single data entry
+     * with the cid of the root and the number of the chunks. Only the root is pinned.
      *
      * @param label_id The ID of the label associated with the data.
-     * @param data_id The cid of the content.
+     * @param data_id The cid of the content, or the cid of the root for a manifest.
      * @param name The arbitrary name for the data.
-     * @param size The size of the data in bytes.
+     * @param size The size of the data in bytes, or the total bytes of the chunks for a manifest.
      * @param producer_sign The producer's signature authorizing the data addition.
+     *                      The chunk_count is signed as well if it is not zero.
+     * @param chunk_count (Optional) The number of the chunks of a manifest, or zero for a single content.
      *
      * @implNote Must trigger the LabelData event when the data is added successfully.
      * @see #LabelData(String, String)
@@ -101,7 +164,8 @@ public interface Label {
                   String data_id,
                   String name,
                   BigInteger size,
-                  String producer_sign);
+                  String producer_sign,
+                  @Optional int chunk_count);
 
     /**
      * Retrieves the data associated with a specific label and data ID.
@@ -127,6 +191,138 @@ public interface Label {
                              int offset,
                              @Optional int limit);
 
+    /**
+     * Retrieves the number of data and the total data bytes of the given label.
+     * The data added before the usage tracking are not included in the bytes.
+     *
+     * @param label_id The ID of the label.
+     *
+     * @return A map containing {@code data_count} and {@code data_bytes}.
+     */
+    Map<String, Object> get_label_usage(String label_id);
+
+    /**
+     * Retrieves the running totals of the data in all labels of the given owner, and the quota.
+     *
+     * @param owner The DID of the owner.
+     *
+     * @return The data count, the data bytes and the quota of the owner.
+     */
+    OwnerUsage get_owner_usage(String owner);
+
+    /**
+     * Sets the quota of the data bytes for the labels of the signer.
+     * {@code add_data} fails if the data would exceed the quota.
+     *
+     * @param quota The maximum total bytes of the data, or zero to remove the quota.
+     * @param owner_sign The signature of the owner. The payload includes the quota as a decimal string
+     *                   and the {@code last_updated} height of the owner usage as the base height.
+     */
+    void set_owner_quota(BigInteger quota, String owner_sign);
+
+    /**
+     * Releases the shared pins of the data of a removed label, up to a limited number of entries per call.
+     * The references are released lazily as the data entries are deleted, either by this or {@link #compact_labels},
+     * and a shared pin is unpinned when its last reference is released.
+     * Anyone can call this, so a label with many entries may need several calls.
+     *
+     * @param label_id The ID of the removed label.
+     */
+    void release_shared_pins(String label_id);
+
+    /**
+     * Extends the shared pins of the given data to the expiration of the label, e.g. after the label is extended.
+     * The expiration of a shared pin is never shortened while it is referenced.
+     * Anyone can call this, and the data not in the label are skipped.
+     *
+     * @param label_id The ID of the label.
+     * @param data_ids The IDs of the data in the label, up to a limited number per call.
+     */
+    void refresh_shared_pins(String label_id, String[] data_ids);
+
+    /**
+     * Retrieves the shared pin of the given data in the labels of the owner.
+     *
+     * @param owner The DID of the owner.
+     * @param data_id The ID of the data.
+     *
+     * @return The number of the labels referencing the data and the expiration of the pin,
+     *         or null if the data is not pinned as a shared pin.
+     */
+    SharedPin get_shared_pin(String owner, String data_id);
+
+    /**
+     * Adds a label group, whose expiration is inherited by the member labels.
+     * The effective expiration of a member label is min(the label's expire_at, the group's expire_at).
+     *
+     * @param group_id The ID of the label group.
+     * @param expire_at The expiration timestamp of the group in microseconds.
+     * @param owner_sign The owner's signature authorizing the group addition.
+     *
+     * @implNote Must trigger the LabelGroupUpdated event when the group is added successfully.
+     * @see #LabelGroupUpdated(String, BigInteger)
+     */
+    void add_label_group(String group_id,
+                         BigInteger expire_at,
+                         String owner_sign);
+
+    /**
+     * Updates the expiration of a label group, which changes the effective expiration of all member labels at once.
+     * The data of the member labels remain pinned until the label's own expire_at.
+     *
+     * @param group_id The ID of the label group.
+     * @param expire_at The new expiration timestamp of the group in microseconds, which must not be negative.
+     *                  Setting it to zero means the member labels will expire immediately.
+     * @param owner_sign The owner's signature authorizing the update.
+     *
+     * @implNote Must trigger the LabelGroupUpdated event when the group is updated successfully.
+     * @see #LabelGroupUpdated(String, BigInteger)
+     */
+    void update_group_expiry(String group_id,
+                             BigInteger expire_at,
+                             String owner_sign);
+
+    /**
+     * Adds a label to a label group of the same owner, or removes it from its group.
+     *
+     * @param label_id The ID of the label.
+     * @param group_id The ID of the label group, or an empty string to remove the label from its group.
+     * @param owner_sign The owner's signature authorizing the update.
+     *
+     * @implNote Must trigger the LabelUpdated event when the label is updated successfully.
+     * @see #LabelUpdated(String)
+     */
+    void set_label_group(String label_id,
+                         String group_id,
+                         String owner_sign);
+
+    /**
+     * Retrieves the details of a label group.
+     *
+     * @param group_id The ID of the label group.
+     *
+     * @return The label group, or null if the group is not found.
+     */
+    LabelGroup get_label_group(String group_id);
+
+    /**
+     * Retrieves the changes of the labels, policies, nodes and label groups made at or after the given block height.
+     * Each change has the type of the entity, its ID and the block height, and the current state can be
+     * queried with the ID. The policies of a removed label are removed with the label without their own changes.
+     * Only the latest changes are kept, so the result tells the caller to resync the whole state
+     * if some changes after the height or the cursor have been dropped.
+     *
+     * @param height The block height from which the changes are retrieved. Ignored if the cursor is given.
+     * @param cursor (Optional) The cursor returned with the previous page, or 0 to start from the height.
+     * @param limit (Optional) The maximum number of items to return.
+     *
+     * @return A page containing the changes and the cursor of the next page, which is also used to poll
+     *         for the changes made later. The resync flag is set if the changes have been dropped.
+     */
+    PageOfChange get_changes_since(long height,
+                                   @Optional long cursor,
+                                   @Optional int limit);
+
     /**
      * Notifies when a new label is added.
      *
@@ -153,6 +349,57 @@ public interface Label {
     @EventLog(indexed=1)
     void LabelUpdated(String label_id);
 
+    /**
+     * Notifies when a new label is added, with the attributes of the label.
+     * This is emitted together with {@link #LabelAdded}, so the indexers can build the label without querying it.
+     *
+     * @param label_id The ID of the label.
+     * @param owner The owner of the label.
+     * @param producer The producer associated with the label.
+     * @param expire_at The expiration timestamp of the label in microseconds.
+     * @param producer_expire_at The expiration timestamp for the producer in microseconds.
+     * @param category The category of the label, or null if not set.
+     * @param last_updated The block height when the label was added.
+     */
+    @EventLog(indexed=3)
+    void LabelAddedV2(String label_id, String owner, String producer, BigInteger expire_at,
+                      BigInteger producer_expire_at, String category, long last_updated);
+
+    /**
+     * Notifies when a label has been removed, with the block height when it was revoked.
+     * This is emitted together with {@link #LabelRemoved}.
+     *
+     * @param label_id The ID of the label that was removed.
+     * @param revoked The block height when the label was revoked.
+     */
+    @EventLog(indexed=1)
+    void LabelRemovedV2(String label_id, long revoked);
+
+    /**
+     * Notifies when a label has been updated, with the updatable attributes after the update.
+     * This is emitted together with {@link #LabelUpdated}, so the indexers can apply the change without querying the label.
+     *
+     * @param label_id The ID of the label that was updated.
+     * @param expire_at The expiration timestamp of the label in microseconds.
+     * @param producer The producer associated with the label.
+     * @param producer_expire_at The expiration timestamp for the producer in microseconds.
+     * @param category The category of the label, or null if not set.
+     * @param last_updated The block height when the label was updated.
+     * @param group_id The label group of the label, or an empty string if the label is not in a group.
+     */
+    @EventLog(indexed=1)
+    void LabelUpdatedV2(String label_id, BigInteger expire_at, String producer,
+                        BigInteger producer_expire_at, String category, long last_updated, String group_id);
+
+    /**
+     * Notifies when a label group is added or its expiration is updated.
+     *
+     * @param group_id The ID of the label group.
+     * @param expire_at The expiration timestamp of the group in microseconds.
+     */
+    @EventLog(indexed=1)
+    void LabelGroupUpdated(String group_id, BigInteger expire_at);
+
     /**
      * Notifies when data is associated with a specific label.
      *
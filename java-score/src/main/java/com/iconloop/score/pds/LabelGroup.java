@@ -0,0 +1,87 @@
+package com.iconloop.score.pds;
+
+import score.ByteArrayObjectWriter;
+import score.Context;
+import score.ObjectReader;
+import score.ObjectWriter;
+
+import java.math.BigInteger;
+
+/**
+ * LabelGroup shares an expiration among the labels of an owner.
+ * The effective expiration of a member label is min(the label's expire_at, the group's expire_at).
+ */
+public class LabelGroup {
+    private final String group_id;
+    private final String owner;
+    private BigInteger expire_at;
+    private final long created;
+    private long last_updated;
+
+    public LabelGroup(String groupId, String owner, BigInteger expireAt, long created, long lastUpdated) {
+        this.group_id = groupId;
+        this.owner = owner;
+        this.expire_at = expireAt;
+        this.created = created;
+        this.last_updated = Math.max(lastUpdated, created);
+    }
+
+    public String getGroup_id() {
+        return group_id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public BigInteger getExpire_at() {
+        return expire_at;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getLast_updated() {
+        return last_updated;
+    }
+
+    // the leaf of the group in the state commitment
+    public byte[] commitment() {
+        ByteArrayObjectWriter w = Context.newByteArrayObjectWriter("RLPn");
+        w.writeListOf(group_id, expire_at);
+        return Context.hash("keccak-256", w.toByteArray());
+    }
+
+    public void updateExpireAt(BigInteger expireAt, long height) {
+        this.expire_at = expireAt;
+        this.last_updated = height;
+    }
+
+    @Override
+    public String toString() {
+        return "LabelGroup{" +
+                "group_id='" + group_id + '\'' +
+                ", owner='" + owner + '\'' +
+                ", expire_at=" + expire_at +
+                ", created=" + created +
+                ", last_updated=" + last_updated +
+                '}';
+    }
+
+    public static void writeObject(ObjectWriter w, LabelGroup g) {
+        w.writeListOf(g.group_id, g.owner, g.expire_at, g.created, g.last_updated);
+    }
+
+    public static LabelGroup readObject(ObjectReader r) {
+        r.beginList();
+        LabelGroup g = new LabelGroup(
+                r.readString(),
+                r.readString(),
+                r.readBigInteger(),
+                r.readLong(),
+                r.readLong());
+        r.end();
+        return g;
+    }
+}
@@ -0,0 +1,25 @@
+package com.iconloop.score.pds;
+
+import com.parametacorp.util.InternTable;
+import score.DictDB;
+
+/**
+ * LabelHandles assigns the numeric handles of the labels, whose storage prefixes are "L" + the handle in base 36.
+ * The labels added before the handles keep their label_id as the prefix, so a handle is skipped if its prefix
+ * is the label_id of an existing label.
+ */
+final class LabelHandles extends InternTable {
+    private static final String TABLE_ID = "labelHandles";
+
+    private final DictDB<String, LabelInfo> labelInfos;
+
+    LabelHandles(DictDB<String, LabelInfo> labelInfos) {
+        super(TABLE_ID);
+        this.labelInfos = labelInfos;
+    }
+
+    @Override
+    protected boolean isReserved(long id) {
+        return labelInfos.get(LabelInfo.storagePrefix(id)) != null;
+    }
+}
@@ -1,19 +1,27 @@
 package com.iconloop.score.pds;
 
-import com.parametacorp.util.EnumerableMap;
 import com.parametacorp.util.EnumerableSet;
+import com.parametacorp.util.GenerationalMap;
+import com.parametacorp.util.VersionTag;
+import score.ByteArrayObjectWriter;
 import score.Context;
 import score.DictDB;
 import score.ObjectReader;
 import score.ObjectWriter;
+import score.VarDB;
 
 import java.math.BigInteger;
 
 public class LabelInfo {
+    // layout version of the stored record
+    // 1: data_format, handle, owner_ref and producer_ref
+    // 2: shared_pins and group_id
+    private static final int VERSION = 2;
+
     private final String label_id;
-    private final String owner;
+    private String owner;
     private String name;
-    private final String public_key;
+    private String public_key;
     private BigInteger expire_at;
     private String category;
     private String producer;
@@ -21,9 +29,22 @@ public class LabelInfo {
     private final long created;
     private long last_updated;
     private long revoked;
-
-    private final EnumerableMap<String, DataInfo> dataMap;
-    private final EnumerableSet<String> policyIds;
+    private int data_format;
+    private long handle;
+    // the interned ids of the owner and the producer, which are stored instead of the DIDs if set
+    private long owner_ref;
+    private long producer_ref;
+    // true if the data are pinned as the shared pins of the owner instead of the group of this label
+    private boolean shared_pins;
+    // the label group whose expiration is inherited, or null
+    private String group_id;
+
+    private GenerationalMap<String, DataInfo> dataMap;
+    private EnumerableSet<String> policyIds;
+    // running total of the data sizes, which is kept out of the record to avoid rewriting it on add_data
+    private VarDB<BigInteger> dataBytes;
+    // number of the data counted in the usage of the owner, which excludes the data added before the usage tracking
+    private VarDB<Long> countedData;
 
     public LabelInfo(Builder builder) {
         this.label_id = builder.labelId;
@@ -36,9 +57,18 @@ public class LabelInfo {
         this.producer_expire_at = builder.producerExpireAt;
         this.created = builder.created;
         this.last_updated = Math.max(builder.lastUpdated, created);
+        this.data_format = builder.dataFormat;
+        this.handle = builder.handle;
+        this.owner_ref = builder.ownerRef;
+        this.producer_ref = builder.producerRef;
+        this.shared_pins = builder.sharedPins;
+        this.group_id = builder.groupId;
+    }
 
-        this.dataMap = new EnumerableMap<>(label_id, String.class, DataInfo.class);
-        this.policyIds = new EnumerableSet<>(label_id, String.class);
+    // resolves the interned DIDs, so that they are included in the output
+    void resolveDids() {
+        getOwner();
+        getProducer();
     }
 
     public String getLabel_id() {
@@ -46,6 +76,9 @@ public class LabelInfo {
     }
 
     public String getOwner() {
+        if (owner == null) {
+            owner = Dids.resolve(owner_ref);
+        }
         return owner;
     }
 
@@ -66,6 +99,9 @@ public class LabelInfo {
     }
 
     public String getProducer() {
+        if (producer == null) {
+            producer = Dids.resolve(producer_ref);
+        }
         return producer;
     }
 
@@ -81,53 +117,144 @@ public class LabelInfo {
         return last_updated;
     }
 
+    public String getGroup_id() {
+        return group_id;
+    }
+
+    public void setGroup(String groupId, long height) {
+        this.group_id = groupId;
+        this.last_updated = height;
+    }
+
+    // named apart from isRevoked(), so that the two are not mapped to the same property of get_label
+    public long getRevoked_at() {
+        return revoked;
+    }
+
+    public static String storagePrefix(long handle) {
+        return "L" + Long.toString(handle, 36);
+    }
+
+    long handle() {
+        return handle;
+    }
+
+    // the labels added before the handles use their label_id as the prefix of the child collections
+    String getStoragePrefix() {
+        return (handle != 0) ? storagePrefix(handle) : label_id;
+    }
+
+    private GenerationalMap<String, DataInfo> getDataMap() {
+        if (dataMap == null) {
+            dataMap = new GenerationalMap<>(getStoragePrefix(), String.class, DataInfo.class, data_format);
+        }
+        return dataMap;
+    }
+
+    private VarDB<BigInteger> getDataBytes() {
+        if (dataBytes == null) {
+            dataBytes = Context.newVarDB(getStoragePrefix() + "_bytes", BigInteger.class);
+        }
+        return dataBytes;
+    }
+
+    private VarDB<Long> getCountedData() {
+        if (countedData == null) {
+            countedData = Context.newVarDB(getStoragePrefix() + "_count", Long.class);
+        }
+        return countedData;
+    }
+
+    private EnumerableSet<String> getPolicyIds() {
+        if (policyIds == null) {
+            policyIds = new EnumerableSet<>(getStoragePrefix(), String.class);
+        }
+        return policyIds;
+    }
+
     @Override
     public String toString() {
         return "LabelInfo{" +
                 "label_id='" + label_id + '\'' +
-                ", owner='" + owner + '\'' +
+                ", owner='" + getOwner() + '\'' +
                 ", name='" + name + '\'' +
                 ", public_key='" + public_key + '\'' +
                 ", expire_at=" + expire_at +
                 ", category='" + category + '\'' +
-                ", producer='" + producer + '\'' +
+                ", producer='" + getProducer() + '\'' +
                 ", producer_expire_at=" + producer_expire_at +
                 ", created=" + created +
                 ", last_updated=" + last_updated +
                 ", revoked=" + revoked +
+                ", data_format=" + data_format +
+                ", handle=" + handle +
+                ", shared_pins=" + shared_pins +
+                ", group_id='" + group_id + '\'' +
                 '}';
     }
 
     public static void writeObject(ObjectWriter w, LabelInfo l) {
         w.writeListOfNullable(
+                VersionTag.tag(VERSION),
                 l.label_id,
-                l.owner,
+                (l.owner_ref != 0) ? null : l.owner,
                 l.name,
                 l.public_key,
                 l.expire_at,
                 l.category,
-                l.producer,
+                (l.producer_ref != 0) ? null : l.producer,
                 l.producer_expire_at,
                 l.created,
                 l.last_updated,
-                l.revoked);
+                l.revoked,
+                l.data_format,
+                l.handle,
+                l.owner_ref,
+                l.producer_ref,
+                l.shared_pins,
+                l.group_id);
     }
 
     public static LabelInfo readObject(ObjectReader r) {
         r.beginList();
+        VersionTag tag = VersionTag.read(r, VERSION);
+        // the attributes except the owner are null if the label has been compacted
         LabelInfo l = new Builder()
-                .labelId(r.readString())
-                .owner(r.readString())
-                .name(r.readString())
-                .publicKey(r.readString())
-                .expireAt(r.readBigInteger())
+                .labelId(tag.readString(r))
+                .owner(r.readNullable(String.class))
+                .name(r.readNullable(String.class))
+                .publicKey(r.readNullable(String.class))
+                .expireAt(r.readNullable(BigInteger.class))
                 .category(r.readNullable(String.class))
-                .producer(r.readString())
-                .producerExpireAt(r.readBigInteger())
+                .producer(r.readNullable(String.class))
+                .producerExpireAt(r.readNullable(BigInteger.class))
                 .created(r.readLong())
                 .lastUpdated(r.readLong())
                 .build();
         l.revoked = r.readLong();
+        int version = tag.getVersion();
+        if (version >= 1) {
+            l.data_format = r.readInt();
+            l.handle = r.readLong();
+            l.owner_ref = r.readLong();
+            l.producer_ref = r.readLong();
+        } else {
+            // the records of version 0 may miss the trailing fields
+            if (r.hasNext()) {
+                l.data_format = r.readInt();
+            }
+            if (r.hasNext()) {
+                l.handle = r.readLong();
+            }
+            if (r.hasNext()) {
+                l.owner_ref = r.readLong();
+                l.producer_ref = r.readLong();
+            }
+        }
+        if (version >= 2) {
+            l.shared_pins = r.readBoolean();
+            l.group_id = r.readNullable(String.class);
+        }
         r.end();
         return l;
     }
@@ -137,10 +264,36 @@ public class LabelInfo {
         this.last_updated = height;
     }
 
+    // the leaf of the label in the state commitment, the group_id is added only for the labels in a label group
+    public byte[] commitment() {
+        ByteArrayObjectWriter w = Context.newByteArrayObjectWriter("RLPn");
+        if (group_id != null) {
+            w.writeListOfNullable(label_id, expire_at, revoked, group_id);
+        } else {
+            w.writeListOfNullable(label_id, expire_at, revoked);
+        }
+        return Context.hash("keccak-256", w.toByteArray());
+    }
+
     public boolean isRevoked() {
         return this.revoked > 0;
     }
 
+    public boolean isCompacted() {
+        return isRevoked() && this.expire_at == null;
+    }
+
+    public void compact() {
+        // only the id, the owner and the revoked height are kept to prevent the label_id from being reused
+        this.name = null;
+        this.public_key = null;
+        this.expire_at = null;
+        this.category = null;
+        this.producer = null;
+        this.producer_ref = 0;
+        this.producer_expire_at = null;
+    }
+
     public void update(Builder attrs) {
         if (attrs.name != null) {
             this.name = attrs.name;
@@ -153,6 +306,7 @@ public class LabelInfo {
         }
         if (attrs.producer != null) {
             this.producer = attrs.producer;
+            this.producer_ref = attrs.producerRef;
         }
         if (attrs.producerExpireAt != null) {
             this.producer_expire_at = attrs.producerExpireAt;
@@ -161,54 +315,97 @@ public class LabelInfo {
     }
 
     public void checkOwnerOrThrow(String owner) {
-        Context.require(this.owner.equals(owner), "invalid owner");
+        Context.require(getOwner().equals(owner), "invalid owner");
     }
 
     public boolean addData(DataInfo dataInfo) {
         var dataId = dataInfo.getData_id();
         // check duplicate first
-        if (dataMap.get(dataId) != null) {
+        if (getDataMap().get(dataId) != null) {
             return false;
         }
-        dataMap.set(dataId, dataInfo);
+        getDataMap().set(dataId, dataInfo);
+        getDataBytes().set(dataBytes().add(dataInfo.getSize()));
+        getCountedData().set(countedDataCount() + 1);
         return true;
     }
 
+    public String getDataIdAt(int index) {
+        return getDataMap().getKey(index);
+    }
+
     public DataInfo getData(String dataId) {
-        return dataMap.get(dataId);
+        return getDataMap().get(dataId);
     }
 
     public int removeDataAll() {
-        int size = dataMap.length();
-        dataMap.removeAll();
-        return size;
+        getDataBytes().set(null);
+        getCountedData().set(null);
+        // the entries are deleted later by reclaimData
+        return getDataMap().clear();
     }
 
-    private static final int DEFAULT_PAGE_SIZE = 25;
+    public int reclaimData(int maxEntries) {
+        return getDataMap().reclaim(maxEntries);
+    }
 
-    private int getStart(int offset, int total) {
-        int start = Math.min(offset, total - 1);
-        if (start < 0) {
-            start = total + start;
-            if (start < 0) {
-                start = 0;
-            }
+    public String nextReclaimedDataId() {
+        return getDataMap().nextReclaimKey();
+    }
+
+    public boolean hasSharedPins() {
+        return shared_pins;
+    }
+
+    public boolean isDataReclaimed() {
+        return getDataMap().isReclaimed();
+    }
+
+    public boolean isDataMigrated() {
+        return data_format == GenerationalMap.INDEXED;
+    }
+
+    // returns true if the data format is changed, so the label needs to be written
+    public boolean migrateData(int maxEntries) {
+        int format = data_format;
+        if (data_format == GenerationalMap.LEGACY) {
+            data_format = GenerationalMap.MIGRATING;
+            dataMap = null;
+        }
+        if (getDataMap().migrate(maxEntries)) {
+            data_format = GenerationalMap.INDEXED;
+            dataMap = null;
         }
-        return start;
+        return data_format != format;
+    }
+
+    // not a getter, so that it is not included in the output of get_label
+    // the data added before the usage tracking are not counted
+    public BigInteger dataBytes() {
+        return getDataBytes().getOrDefault(BigInteger.ZERO);
     }
 
-    private int getSize(int start, int limit, int total) {
-        int size = (limit > 0) ? limit : DEFAULT_PAGE_SIZE;
-        return Math.min(size, total - start);
+    // the data added before the usage tracking are not counted, unlike dataCount()
+    public long countedDataCount() {
+        return getCountedData().getOrDefault(0L);
+    }
+
+    public int dataCount() {
+        return getDataMap().length();
+    }
+
+    public int policyCount() {
+        return getPolicyIds().length();
     }
 
     public PageOfData getDataPage(int offset, int limit) {
+        var dataMap = getDataMap();
         int total = dataMap.length();
         if (total == 0) {
             return new PageOfData(0, 0, 0, new DataInfo[0]);
         }
-        int start = getStart(offset, total);
-        int size = getSize(start, limit, total);
+        int start = Paging.getStart(offset, total);
+        int size = Paging.getSize(start, limit, total);
         DataInfo[] infos = new DataInfo[size];
         for (int i = 0; i < size; i++) {
             var key = dataMap.getKey(start + i);
@@ -217,31 +414,45 @@ public class LabelInfo {
         return new PageOfData(start, size, total, infos);
     }
 
+    public String getPolicyIdAt(int index) {
+        return getPolicyIds().at(index);
+    }
+
     public void addPolicyId(String policyId) {
-        policyIds.add(policyId);
+        getPolicyIds().add(policyId);
     }
 
-    public int removePolicyAll(DictDB<String, PolicyInfo> policyInfo) {
+    public int removePolicyAll(DictDB<String, PolicyInfo> policyInfo, DictDB<String, AuthRecord> authRecords) {
+        var policyIds = getPolicyIds();
         var size = policyIds.length();
         for (int i = size - 1; i >= 0; i--) {
             var key = policyIds.at(i);
             policyIds.remove(key);
+            var policy = policyInfo.get(key);
+            if (policy != null && policy.isGroup()) {
+                policy.removeConsumerAll();
+            }
             policyInfo.set(key, null);
+            authRecords.set(key, null);
         }
         return size;
     }
 
     public PageOfPolicy getPoliciesPage(DictDB<String, PolicyInfo> policyMap, int offset, int limit) {
+        var policyIds = getPolicyIds();
         int total = policyIds.length();
         if (total == 0) {
             return new PageOfPolicy(0, 0, 0, new PolicyInfo[0]);
         }
-        int start = getStart(offset, total);
-        int size = getSize(start, limit, total);
+        int start = Paging.getStart(offset, total);
+        int size = Paging.getSize(start, limit, total);
         PolicyInfo[] infos = new PolicyInfo[size];
         for (int i = 0; i < size; i++) {
             var key = policyIds.at(start + i);
             infos[i] = policyMap.get(key);
+            if (infos[i] != null) {
+                infos[i].resolveDids();
+            }
         }
         return new PageOfPolicy(start, size, total, infos);
     }
@@ -257,6 +468,12 @@ public class LabelInfo {
         private BigInteger producerExpireAt;
         private long created;
         private long lastUpdated;
+        private int dataFormat;
+        private long handle;
+        private long ownerRef;
+        private long producerRef;
+        private boolean sharedPins;
+        private String groupId;
 
         public Builder labelId(String labelId) {
             this.labelId = labelId;
@@ -308,6 +525,36 @@ public class LabelInfo {
             return this;
         }
 
+        public Builder dataFormat(int dataFormat) {
+            this.dataFormat = dataFormat;
+            return this;
+        }
+
+        public Builder handle(long handle) {
+            this.handle = handle;
+            return this;
+        }
+
+        public Builder ownerRef(long ownerRef) {
+            this.ownerRef = ownerRef;
+            return this;
+        }
+
+        public Builder producerRef(long producerRef) {
+            this.producerRef = producerRef;
+            return this;
+        }
+
+        public Builder sharedPins(boolean sharedPins) {
+            this.sharedPins = sharedPins;
+            return this;
+        }
+
+        public Builder groupId(String groupId) {
+            this.groupId = groupId;
+            return this;
+        }
+
         public LabelInfo build() {
             return new LabelInfo(this);
         }
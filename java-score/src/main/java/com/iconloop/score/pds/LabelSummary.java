@@ -0,0 +1,25 @@
+package com.iconloop.score.pds;
+
+public class LabelSummary {
+    private final LabelInfo label;
+    private final int policy_count;
+    private final int data_count;
+
+    public LabelSummary(LabelInfo label, int policyCount, int dataCount) {
+        this.label = label;
+        this.policy_count = policyCount;
+        this.data_count = dataCount;
+    }
+
+    public LabelInfo getLabel() {
+        return label;
+    }
+
+    public int getPolicy_count() {
+        return policy_count;
+    }
+
+    public int getData_count() {
+        return data_count;
+    }
+}
@@ -5,6 +5,7 @@ import score.annotation.EventLog;
 import score.annotation.Optional;
 
 import java.math.BigInteger;
+import java.util.Map;
 
 public interface Node {
     /**
@@ -14,13 +15,15 @@ public interface Node {
      * @param name The name of the node.
      * @param endpoint The network endpoint of the peer node.
      * @param owner The owner of the node.
+     * @param region (Optional) The region or zone where the node is located.
      *
      * @implNote This method should be payable to accept the staking tokens.
      */
     void add_node(String peer_id,
                   String name,
                   String endpoint,
-                  @Optional Address owner);
+                  @Optional Address owner,
+                  @Optional String region);
 
     /**
      * Updates the attributes of an existing node.
@@ -29,16 +32,19 @@ public interface Node {
      * @param owner (Optional) The updated owner of the node.
      * @param name (Optional) The updated name of the node.
      * @param endpoint (Optional) The updated network endpoint of the node.
+     * @param region (Optional) The updated region or zone of the node.
      *
      * @implNote This method should be payable to accept the additional staking tokens.
      */
     void update_node(String peer_id,
                      @Optional Address owner,
                      @Optional String name,
-                     @Optional String endpoint);
+                     @Optional String endpoint,
+                     @Optional String region);
 
     /**
      * Removes an existing node.
+     * The stake of the node is moved to the unbonding queue of its owner.
      *
      * @param peer_id The ID of the node to be removed.
      */
@@ -61,6 +67,202 @@ public interface Node {
      */
     NodeInfo[] all_nodes();
 
+    /**
+     * Retrieves a page of nodes in the registration order.
+     * Unlike the offset based pagination, the pages are not shifted by the nodes added or removed in between.
+     * The cursor expires and the call reverts if too many nodes before it have been removed in between,
+     * in which case the pagination should be restarted from 0.
+     *
+     * @param cursor (Optional) The cursor returned with the previous page, or 0 for the first page.
+     * @param limit (Optional) The maximum number of items to return.
+     *
+     * @return A paginated result containing the list of nodes and the cursor of the next page,
+     *         which is 0 if there are no more nodes.
+     */
+    PageOfNode get_nodes(@Optional long cursor,
+                         @Optional int limit);
+
+    /**
+     * Retrieves a page of nodes located in the given region, in the same way as {@link #get_nodes}.
+     *
+     * @param region The region or zone of the nodes.
+     * @param cursor (Optional) The cursor returned with the previous page, or 0 for the first page.
+     * @param limit (Optional) The maximum number of items to return.
+     *
+     * @return A paginated result containing the list of nodes and the cursor of the next page.
+     */
+    PageOfNode get_nodes_by_region(String region,
+                                   @Optional long cursor,
+                                   @Optional int limit);
+
+    /**
+     * Publishes the capacity of the node. This is cheaper than {@link #update_node} since it only
+     * writes a small capacity record, and the node record is rewritten only if the region is changed.
+     *
+     * @param peer_id The ID of the node.
+     * @param max_rps The maximum number of re-encryption requests per second the node can serve.
+     * @param cores The number of CPU cores available for the node.
+     * @param region (Optional) The region or zone where the node is located.
+     *
+     * @implNote Must trigger the NodeCapacityUpdated event when the capacity is updated successfully.
+     * @see #NodeCapacityUpdated(String, long, int)
+     */
+    void set_node_capacity(String peer_id,
+                           long max_rps,
+                           int cores,
+                           @Optional String region);
+
+    /**
+     * Retrieves the capacity published by the node.
+     *
+     * @param peer_id The ID of the node.
+     *
+     * @return The capacity of the node, or null if the node has not published it.
+     */
+    NodeCapacity get_node_capacity(String peer_id);
+
+    /**
+     * Sets the length of the heartbeat epoch in blocks. Zero disables the heartbeats.
+     *
+     * @param interval The number of blocks in an epoch.
+     */
+    void set_heartbeat_interval(BigInteger interval);
+
+    /**
+     * Retrieves the length of the heartbeat epoch in blocks.
+     *
+     * @return The number of blocks in an epoch, or zero if the heartbeats are disabled.
+     */
+    BigInteger get_heartbeat_interval();
+
+    /**
+     * Marks the node as alive in the current epoch.
+     * The heartbeats of all nodes in an epoch are stored in a single bitmap.
+     *
+     * @param peer_id The ID of the node.
+     * @param saturated (Optional) True if the node is running at its capacity.
+     */
+    void heartbeat(String peer_id, @Optional boolean saturated);
+
+    /**
+     * Retrieves the capacity and the liveness of a node.
+     * A node is alive if it has sent a heartbeat in the current or the previous epoch,
+     * and every node is regarded as alive if the heartbeats are disabled.
+     *
+     * @param peer_id The ID of the node.
+     *
+     * @return The status of the node, or null if the node is not found.
+     */
+    NodeStatus get_node_status(String peer_id);
+
+    /**
+     * Retrieves the capacity and the liveness of all registered nodes.
+     *
+     * @return A list of the status of all nodes.
+     */
+    NodeStatus[] all_node_status();
+
+    /**
+     * Selects the nodes to serve the given policy by the weighted rendezvous hashing over
+     * the registered nodes, where each node is weighted by its stake.
+     * The result is deterministic, so consumers and nodes can agree on the assignment without coordination.
+     * If the heartbeats are enabled, silent nodes are skipped and saturated nodes get less weight.
+     *
+     * @param policy_id The ID of the policy to be served.
+     * @param count (Optional) The number of nodes to select. If zero, the threshold of the policy is used.
+     *
+     * @return A list of the selected nodes, ordered by preference.
+     */
+    NodeInfo[] select_nodes(String policy_id, @Optional int count);
+
+    /**
+     * Withdraws a part of the stake of the node.
+     * The amount is locked in the unbonding queue of the owner for the unbonding period.
+     *
+     * @param peer_id The ID of the node.
+     * @param amount The amount of the stake to withdraw.
+     *
+     * @implNote Must trigger the StakeUnbonding event when the stake is withdrawn successfully.
+     * @see #StakeUnbonding(String, Address, BigInteger, BigInteger)
+     */
+    void unstake(String peer_id, BigInteger amount);
+
+    /**
+     * Transfers all unlocked stake in the unbonding queue of the caller.
+     *
+     * @implNote Must trigger the UnbondingClaimed event when the stake is transferred successfully.
+     * @see #UnbondingClaimed(Address, BigInteger)
+     */
+    void claim_unbonded();
+
+    /**
+     * Retrieves the unbonding stake of the owner.
+     *
+     * @param owner The owner of the nodes.
+     *
+     * @return A map containing the "locked" amount and the "claimable" amount.
+     */
+    Map<String, Object> get_unbonding(Address owner);
+
+    /**
+     * Sets the number of blocks for which the withdrawn stake is locked.
+     * The withdrawals of an owner unlock in the order of withdrawal, so after the period is shortened,
+     * a new withdrawal doesn't unlock before the withdrawals made under the longer period.
+     *
+     * @param period The unbonding period in blocks.
+     */
+    void set_unbonding_period(BigInteger period);
+
+    /**
+     * Retrieves the number of blocks for which the withdrawn stake is locked.
+     *
+     * @return The unbonding period in blocks.
+     */
+    BigInteger get_unbonding_period();
+
+    /**
+     * Deposits the reward to be distributed to all nodes in proportion to their stake.
+     * The distribution only updates the global reward index, and each node settles its share lazily.
+     *
+     * @implNote This method should be payable to accept the reward.
+     *           Must trigger the RewardDeposited event when the reward is deposited successfully.
+     * @see #RewardDeposited(Address, BigInteger)
+     */
+    void deposit_reward();
+
+    /**
+     * Settles and transfers the pending reward of the node to its owner.
+     *
+     * @param peer_id The ID of the node.
+     *
+     * @implNote Must trigger the RewardClaimed event when a non-zero reward is transferred.
+     * @see #RewardClaimed(String, Address, BigInteger)
+     */
+    void claim_reward(String peer_id);
+
+    /**
+     * Retrieves the reward which the node can claim.
+     *
+     * @param peer_id The ID of the node.
+     *
+     * @return The pending reward of the node.
+     */
+    BigInteger get_pending_reward(String peer_id);
+
+    /**
+     * Retrieves the accumulated reward per unit of stake, scaled by 10^18.
+     *
+     * @return The current reward index.
+     */
+    BigInteger get_reward_index();
+
+    /**
+     * Retrieves the sum of the stake of all registered nodes.
+     *
+     * @return The total stake.
+     */
+    BigInteger get_total_stake();
+
     /**
      * Sets the minimum stake value required for serving as a node.
      *
@@ -116,4 +318,53 @@ public interface Node {
      */
     @EventLog(indexed=1)
     void NodeRemoved(String peer_id);
+
+    /**
+     * Notifies when the reward is deposited for the nodes.
+     *
+     * @param sender The address which deposited the reward.
+     * @param amount The amount of the reward.
+     */
+    @EventLog(indexed=1)
+    void RewardDeposited(Address sender, BigInteger amount);
+
+    /**
+     * Notifies when the reward of a node is transferred to its owner.
+     *
+     * @param peer_id The unique identifier of the node.
+     * @param owner The owner of the node who received the reward.
+     * @param amount The amount of the reward.
+     */
+    @EventLog(indexed=2)
+    void RewardClaimed(String peer_id, Address owner, BigInteger amount);
+
+    /**
+     * Notifies when a stake is withdrawn and locked in the unbonding queue.
+     *
+     * @param peer_id The unique identifier of the node.
+     * @param owner The owner of the node.
+     * @param amount The amount of the withdrawn stake.
+     * @param unlock_height The block height at which the stake can be claimed.
+     */
+    @EventLog(indexed=2)
+    void StakeUnbonding(String peer_id, Address owner, BigInteger amount, BigInteger unlock_height);
+
+    /**
+     * Notifies when the unlocked stake is transferred to its owner.
+     *
+     * @param owner The owner who received the stake.
+     * @param amount The amount of the stake.
+     */
+    @EventLog(indexed=1)
+    void UnbondingClaimed(Address owner, BigInteger amount);
+
+    /**
+     * Notifies when a node has published its capacity.
+     *
+     * @param peer_id The unique identifier of the node.
+     * @param max_rps The maximum number of requests per second the node can serve.
+     * @param cores The number of CPU cores available for the node.
+     */
+    @EventLog(indexed=1)
+    void NodeCapacityUpdated(String peer_id, long max_rps, int cores);
 }
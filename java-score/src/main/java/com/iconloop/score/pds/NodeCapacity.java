@@ -0,0 +1,51 @@
+package com.iconloop.score.pds;
+
+import score.ObjectReader;
+import score.ObjectWriter;
+
+public class NodeCapacity {
+    private final long max_rps;
+    private final int cores;
+    private final long last_updated;
+
+    public NodeCapacity(long maxRps, int cores, long lastUpdated) {
+        this.max_rps = maxRps;
+        this.cores = cores;
+        this.last_updated = lastUpdated;
+    }
+
+    public long getMax_rps() {
+        return max_rps;
+    }
+
+    public int getCores() {
+        return cores;
+    }
+
+    public long getLast_updated() {
+        return last_updated;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeCapacity{" +
+                "max_rps=" + max_rps +
+                ", cores=" + cores +
+                ", last_updated=" + last_updated +
+                '}';
+    }
+
+    public static void writeObject(ObjectWriter w, NodeCapacity c) {
+        w.writeListOf(c.max_rps, c.cores, c.last_updated);
+    }
+
+    public static NodeCapacity readObject(ObjectReader r) {
+        r.beginList();
+        NodeCapacity c = new NodeCapacity(
+                r.readLong(),
+                r.readInt(),
+                r.readLong());
+        r.end();
+        return c;
+    }
+}
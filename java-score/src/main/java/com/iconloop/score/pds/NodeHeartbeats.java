@@ -0,0 +1,134 @@
+package com.iconloop.score.pds;
+
+import score.ArrayDB;
+import score.Context;
+import score.DictDB;
+import score.VarDB;
+
+/**
+ * NodeHeartbeats keeps the heartbeats of the nodes in the current and the previous epoch.
+ *   - Each node is assigned a slot, and the heartbeats are kept in bitmap words of HeartbeatInfo.WORD_BITS slots,
+ *     so a heartbeat rewrites only the word of its node instead of a single bitmap shared by all nodes.
+ *   - The slot of a removed node is recycled after its bits are cleared,
+ *     so the node taking the slot doesn't inherit the heartbeats of the removed one.
+ */
+public class NodeHeartbeats {
+    // peer_id => slot
+    private final DictDB<String, Integer> slots;
+    private final VarDB<Integer> slotCount;
+    private final ArrayDB<Integer> freeSlots;
+    // (epoch % 2) + "_" + word => heartbeats of the word
+    private final DictDB<String, HeartbeatInfo> words;
+
+    public NodeHeartbeats() {
+        this.slots = Context.newDictDB("nodeSlots", Integer.class);
+        this.slotCount = Context.newVarDB("nodeSlotCount", Integer.class);
+        this.freeSlots = Context.newArrayDB("nodeFreeSlots", Integer.class);
+        this.words = Context.newDictDB("heartbeatWords", HeartbeatInfo.class);
+    }
+
+    private static String wordKey(long epoch, int word) {
+        // only the heartbeats of the current and the previous epoch are kept
+        return (epoch % 2) + "_" + word;
+    }
+
+    private HeartbeatInfo getWord(long epoch, int word) {
+        if (epoch < 0) {
+            return null;
+        }
+        HeartbeatInfo heartbeat = words.get(wordKey(epoch, word));
+        return (heartbeat != null && heartbeat.getEpoch() == epoch) ? heartbeat : null;
+    }
+
+    public Integer getSlot(String peerId) {
+        return slots.get(peerId);
+    }
+
+    private int getOrAssignSlot(String peerId) {
+        Integer slot = slots.get(peerId);
+        if (slot == null) {
+            int free = freeSlots.size();
+            if (free > 0) {
+                slot = freeSlots.pop();
+            } else {
+                slot = slotCount.getOrDefault(0);
+                slotCount.set(slot + 1);
+            }
+            slots.set(peerId, slot);
+        }
+        return slot;
+    }
+
+    public void beat(String peerId, long epoch, boolean saturated) {
+        int slot = getOrAssignSlot(peerId);
+        int word = slot / HeartbeatInfo.WORD_BITS;
+        HeartbeatInfo heartbeat = getWord(epoch, word);
+        if (heartbeat == null) {
+            heartbeat = new HeartbeatInfo(epoch);
+        }
+        heartbeat.mark(slot, saturated);
+        words.set(wordKey(epoch, word), heartbeat);
+    }
+
+    public void release(String peerId) {
+        Integer slot = slots.get(peerId);
+        if (slot == null) {
+            return;
+        }
+        int word = slot / HeartbeatInfo.WORD_BITS;
+        for (int parity = 0; parity < 2; parity++) {
+            String key = wordKey(parity, word);
+            HeartbeatInfo heartbeat = words.get(key);
+            if (heartbeat != null && heartbeat.isAlive(slot)) {
+                heartbeat.clear(slot);
+                words.set(key, heartbeat);
+            }
+        }
+        slots.set(peerId, null);
+        freeSlots.add(slot);
+    }
+
+    public Recent getRecent(long epoch) {
+        return new Recent(epoch);
+    }
+
+    /**
+     * Recent loads the words of the current and the previous epoch on demand,
+     * so checking all nodes reads each word once.
+     */
+    public class Recent {
+        private final long epoch;
+        private final HeartbeatInfo[][] cache;
+        private final boolean[][] loaded;
+
+        private Recent(long epoch) {
+            int size = (slotCount.getOrDefault(0) + HeartbeatInfo.WORD_BITS - 1) / HeartbeatInfo.WORD_BITS;
+            this.epoch = epoch;
+            this.cache = new HeartbeatInfo[2][size];
+            this.loaded = new boolean[2][size];
+        }
+
+        private HeartbeatInfo get(int age, int word) {
+            if (word >= cache[age].length) {
+                return null;
+            }
+            if (!loaded[age][word]) {
+                cache[age][word] = getWord(epoch - age, word);
+                loaded[age][word] = true;
+            }
+            return cache[age][word];
+        }
+
+        // returns the most recent heartbeats of the slot, or null if the node has been silent
+        public HeartbeatInfo find(int slot) {
+            int word = slot / HeartbeatInfo.WORD_BITS;
+            for (int age = 0; age < 2; age++) {
+                HeartbeatInfo heartbeat = get(age, word);
+                if (heartbeat != null && heartbeat.isAlive(slot)) {
+                    return heartbeat;
+                }
+            }
+            return null;
+        }
+    }
+}
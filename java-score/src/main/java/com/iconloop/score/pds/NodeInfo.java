@@ -1,5 +1,6 @@
 package com.iconloop.score.pds;
 
+import com.parametacorp.util.VersionTag;
 import score.Address;
 import score.ObjectReader;
 import score.ObjectWriter;
@@ -7,6 +8,12 @@ import score.ObjectWriter;
 import java.math.BigInteger;
 
 public class NodeInfo {
+    // layout version of the stored record
+    // 1: region and reward_index
+    private static final int VERSION = 1;
+    // the reward index is the accumulated reward per unit of stake, scaled by this factor
+    static final BigInteger REWARD_INDEX_SCALE = new BigInteger("1000000000000000000");
+
     private final String peer_id;
     private String name;
     private String endpoint;
@@ -14,6 +21,8 @@ public class NodeInfo {
     private final long created;
     private BigInteger stake;
     private BigInteger reward;
+    private String region;
+    private BigInteger reward_index;
 
     public NodeInfo(String peerId,
                     String name,
@@ -71,6 +80,44 @@ public class NodeInfo {
         return reward;
     }
 
+    public String getRegion() {
+        return region;
+    }
+
+    public void setRegion(String region) {
+        this.region = region;
+    }
+
+    public BigInteger getReward_index() {
+        return reward_index;
+    }
+
+    public BigInteger getPendingReward(BigInteger rewardIndex) {
+        BigInteger pending = (reward == null) ? BigInteger.ZERO : reward;
+        if (stake != null && stake.signum() > 0) {
+            BigInteger lastIndex = (reward_index == null) ? BigInteger.ZERO : reward_index;
+            pending = pending.add(stake.multiply(rewardIndex.subtract(lastIndex)).divide(REWARD_INDEX_SCALE));
+        }
+        return pending;
+    }
+
+    public void startAccruing(BigInteger rewardIndex) {
+        // a new node accrues only the rewards deposited after it has been added
+        this.reward_index = rewardIndex;
+    }
+
+    public void settleReward(BigInteger rewardIndex) {
+        // must be called before the stake is changed
+        this.reward = getPendingReward(rewardIndex);
+        this.reward_index = rewardIndex;
+    }
+
+    public BigInteger claimReward() {
+        BigInteger amount = (reward == null) ? BigInteger.ZERO : reward;
+        this.reward = BigInteger.ZERO;
+        return amount;
+    }
+
     public boolean checkOwner(Address owner) {
         return this.owner.equals(owner);
     }
@@ -85,31 +132,49 @@ public class NodeInfo {
                 ", created=" + created +
                 ", stake=" + stake +
                 ", reward=" + reward +
+                ", region='" + region + '\'' +
+                ", reward_index=" + reward_index +
                 '}';
     }
 
     public static void writeObject(ObjectWriter w, NodeInfo n) {
         w.writeListOfNullable(
+                VersionTag.tag(VERSION),
                 n.peer_id,
                 n.name,
                 n.endpoint,
                 n.owner,
                 n.created,
                 n.stake,
-                n.reward
+                n.reward,
+                n.region,
+                n.reward_index
         );
     }
 
     public static NodeInfo readObject(ObjectReader r) {
         r.beginList();
+        VersionTag tag = VersionTag.read(r, VERSION);
         NodeInfo n = new NodeInfo(
-                r.readString(),
+                tag.readString(r),
                 r.readNullable(String.class),
                 r.readString(),
                 r.readAddress(),
                 r.readLong(),
                 r.readNullable(BigInteger.class),
                 r.readNullable(BigInteger.class));
+        if (tag.getVersion() >= 1) {
+            n.region = r.readNullable(String.class);
+            n.reward_index = r.readNullable(BigInteger.class);
+        } else {
+            // the records of version 0 may miss the trailing fields
+            if (r.hasNext()) {
+                n.region = r.readNullable(String.class);
+            }
+            if (r.hasNext()) {
+                n.reward_index = r.readNullable(BigInteger.class);
+            }
+        }
         r.end();
         return n;
     }
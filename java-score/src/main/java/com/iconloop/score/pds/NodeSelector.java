@@ -0,0 +1,109 @@
+package com.iconloop.score.pds;
+
+import score.Context;
+
+import java.math.BigInteger;
+
+/**
+ * NodeSelector picks nodes by the weighted rendezvous hashing (highest random weight).
+ *   - Each node gets the score of {@code weight / -ln(u)}, where {@code u} is derived from {@code hash(key + peer_id)}.
+ *   - The nodes with the highest scores are selected, so the selection only changes for the keys
+ *     whose chosen nodes have joined or left.
+ * Scores are computed in fixed-point integer arithmetic to be deterministic on every node.
+ */
+final class NodeSelector {
+    // number of fractional bits of the fixed-point logarithm
+    private static final int FRAC_BITS = 30;
+    private static final long ONE = 1L << FRAC_BITS;
+
+    private final byte[] key;
+    private final NodeInfo[] selected;
+    private final BigInteger[] scores;
+    private int size;
+
+    NodeSelector(String key, int count) {
+        this.key = key.getBytes();
+        this.selected = new NodeInfo[count];
+        this.scores = new BigInteger[count];
+    }
+
+    void offer(NodeInfo node, BigInteger weight) {
+        if (selected.length == 0) {
+            return;
+        }
+        BigInteger score = score(node.getPeer_id(), weight);
+        int pos = size;
+        while (pos > 0 && isBetter(score, node, pos - 1)) {
+            pos--;
+        }
+        if (pos == selected.length) {
+            return;
+        }
+        int last = Math.min(size, selected.length - 1);
+        for (int i = last; i > pos; i--) {
+            selected[i] = selected[i - 1];
+            scores[i] = scores[i - 1];
+        }
+        selected[pos] = node;
+        scores[pos] = score;
+        if (size < selected.length) {
+            size++;
+        }
+    }
+
+    NodeInfo[] getSelected() {
+        NodeInfo[] result = new NodeInfo[size];
+        System.arraycopy(selected, 0, result, 0, size);
+        return result;
+    }
+
+    private boolean isBetter(BigInteger score, NodeInfo node, int index) {
+        int cmp = score.compareTo(scores[index]);
+        if (cmp == 0) {
+            // break ties by peer_id to keep the order stable
+            return node.getPeer_id().compareTo(selected[index].getPeer_id()) < 0;
+        }
+        return cmp > 0;
+    }
+
+    private BigInteger score(String peerId, BigInteger weight) {
+        byte[] peerBytes = peerId.getBytes();
+        byte[] msgBytes = new byte[key.length + peerBytes.length];
+        System.arraycopy(key, 0, msgBytes, 0, key.length);
+        System.arraycopy(peerBytes, 0, msgBytes, key.length, peerBytes.length);
+        byte[] hash = Context.hash("keccak-256", msgBytes);
+
+        // take an odd 63-bit number x from the hash, so that u = x / 2^63 is in (0, 1)
+        long h = 0;
+        for (int i = 0; i < 8; i++) {
+            h = (h << 8) | (hash[i] & 0xff);
+        }
+        long x = ((h >>> 2) << 1) | 1;
+
+        // -log2(u) = 63 - log2(x); the constant factor ln(2) does not change the ranking
+        long negLog = (63L << FRAC_BITS) - log2(x);
+        if (negLog <= 0) {
+            negLog = 1;
+        }
+        return weight.shiftLeft(64).divide(BigInteger.valueOf(negLog));
+    }
+
+    // returns log2(x) for x > 0 as a fixed-point number with FRAC_BITS fractional bits
+    static long log2(long x) {
+        int n = 0;
+        while ((x >>> (n + 1)) != 0) {
+            n++;
+        }
+        // normalize x into [1, 2)
+        long y = (n >= FRAC_BITS) ? (x >>> (n - FRAC_BITS)) : (x << (FRAC_BITS - n));
+        long result = (long) n << FRAC_BITS;
+        for (long bit = ONE >>> 1; bit > 0; bit >>>= 1) {
+            y = (y * y) >>> FRAC_BITS;
+            if (y >= (ONE << 1)) {
+                y >>>= 1;
+                result |= bit;
+            }
+        }
+        return result;
+    }
+}
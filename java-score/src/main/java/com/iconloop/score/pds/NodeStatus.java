@@ -0,0 +1,71 @@
+package com.iconloop.score.pds;
+
+import java.math.BigInteger;
+
+public class NodeStatus {
+    private final String peer_id;
+    private final String endpoint;
+    private final String region;
+    private final BigInteger stake;
+    private final long max_rps;
+    private final int cores;
+    private final boolean alive;
+    private final boolean saturated;
+
+    public NodeStatus(NodeInfo nodeInfo, NodeCapacity capacity, boolean alive, boolean saturated) {
+        this.peer_id = nodeInfo.getPeer_id();
+        this.endpoint = nodeInfo.getEndpoint();
+        this.region = nodeInfo.getRegion();
+        this.stake = nodeInfo.getStake();
+        this.max_rps = (capacity != null) ? capacity.getMax_rps() : 0;
+        this.cores = (capacity != null) ? capacity.getCores() : 0;
+        this.alive = alive;
+        this.saturated = saturated;
+    }
+
+    public String getPeer_id() {
+        return peer_id;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public BigInteger getStake() {
+        return stake;
+    }
+
+    public long getMax_rps() {
+        return max_rps;
+    }
+
+    public int getCores() {
+        return cores;
+    }
+
+    public boolean getAlive() {
+        return alive;
+    }
+
+    public boolean getSaturated() {
+        return saturated;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeStatus{" +
+                "peer_id='" + peer_id + '\'' +
+                ", endpoint='" + endpoint + '\'' +
+                ", region='" + region + '\'' +
+                ", stake=" + stake +
+                ", max_rps=" + max_rps +
+                ", cores=" + cores +
+                ", alive=" + alive +
+                ", saturated=" + saturated +
+                '}';
+    }
+}
@@ -0,0 +1,89 @@
+package com.iconloop.score.pds;
+
+import score.ObjectReader;
+import score.ObjectWriter;
+
+import java.math.BigInteger;
+
+/**
+ * OwnerUsage keeps the running totals of the data in the labels of an owner,
+ * and the optional quota of the data bytes set by the owner.
+ */
+public class OwnerUsage {
+    private long data_count;
+    private BigInteger data_bytes;
+    // zero means no quota
+    private BigInteger quota;
+    private long last_updated;
+
+    public OwnerUsage(long dataCount, BigInteger dataBytes, BigInteger quota, long lastUpdated) {
+        this.data_count = dataCount;
+        this.data_bytes = dataBytes;
+        this.quota = quota;
+        this.last_updated = lastUpdated;
+    }
+
+    public static OwnerUsage empty() {
+        return new OwnerUsage(0, BigInteger.ZERO, BigInteger.ZERO, 0);
+    }
+
+    public long getData_count() {
+        return data_count;
+    }
+
+    public BigInteger getData_bytes() {
+        return data_bytes;
+    }
+
+    public BigInteger getQuota() {
+        return quota;
+    }
+
+    public long getLast_updated() {
+        return last_updated;
+    }
+
+    public boolean allows(BigInteger size) {
+        return quota.signum() == 0 || data_bytes.add(size).compareTo(quota) <= 0;
+    }
+
+    public void add(long count, BigInteger bytes) {
+        data_count += count;
+        data_bytes = data_bytes.add(bytes);
+    }
+
+    public void remove(long count, BigInteger bytes) {
+        data_count -= count;
+        data_bytes = data_bytes.subtract(bytes);
+    }
+
+    public void setQuota(BigInteger quota, long height) {
+        this.quota = quota;
+        this.last_updated = height;
+    }
+
+    @Override
+    public String toString() {
+        return "OwnerUsage{" +
+                "data_count=" + data_count +
+                ", data_bytes=" + data_bytes +
+                ", quota=" + quota +
+                ", last_updated=" + last_updated +
+                '}';
+    }
+
+    public static void writeObject(ObjectWriter w, OwnerUsage u) {
+        w.writeListOf(u.data_count, u.data_bytes, u.quota, u.last_updated);
+    }
+
+    public static OwnerUsage readObject(ObjectReader r) {
+        r.beginList();
+        OwnerUsage u = new OwnerUsage(
+                r.readLong(),
+                r.readBigInteger(),
+                r.readBigInteger(),
+                r.readLong());
+        r.end();
+        return u;
+    }
+}
@@ -0,0 +1,25 @@
+package com.iconloop.score.pds;
+
+public class PageOfChange {
+    private final long cursor;
+    private final boolean resync;
+    private final ChangeRecord[] changes;
+
+    public PageOfChange(long cursor, boolean resync, ChangeRecord[] changes) {
+        this.cursor = cursor;
+        this.resync = resync;
+        this.changes = changes;
+    }
+
+    public long getCursor() {
+        return cursor;
+    }
+
+    public boolean getResync() {
+        return resync;
+    }
+
+    public ChangeRecord[] getChanges() {
+        return changes;
+    }
+}
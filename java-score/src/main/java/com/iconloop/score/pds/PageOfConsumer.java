@@ -0,0 +1,31 @@
+package com.iconloop.score.pds;
+
+public class PageOfConsumer {
+    private final int offset;
+    private final int size;
+    private final int total;
+    private final String[] ids;
+
+    public PageOfConsumer(int offset, int size, int total, String[] ids) {
+        this.offset = offset;
+        this.size = size;
+        this.total = total;
+        this.ids = ids;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public String[] getIds() {
+        return ids;
+    }
+}
@@ -0,0 +1,31 @@
+package com.iconloop.score.pds;
+
+public class PageOfLabel {
+    private final long cursor;
+    private final int size;
+    private final int total;
+    private final LabelSummary[] ids;
+
+    public PageOfLabel(long cursor, int size, int total, LabelSummary[] ids) {
+        this.cursor = cursor;
+        this.size = size;
+        this.total = total;
+        this.ids = ids;
+    }
+
+    public long getCursor() {
+        return cursor;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public LabelSummary[] getIds() {
+        return ids;
+    }
+}
@@ -0,0 +1,31 @@
+package com.iconloop.score.pds;
+
+public class PageOfNode {
+    private final long cursor;
+    private final int size;
+    private final int total;
+    private final NodeInfo[] ids;
+
+    public PageOfNode(long cursor, int size, int total, NodeInfo[] ids) {
+        this.cursor = cursor;
+        this.size = size;
+        this.total = total;
+        this.ids = ids;
+    }
+
+    public long getCursor() {
+        return cursor;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public NodeInfo[] getIds() {
+        return ids;
+    }
+}
@@ -0,0 +1,23 @@
+package com.iconloop.score.pds;
+
+final class Paging {
+    static final int DEFAULT_PAGE_SIZE = 25;
+
+    private Paging() {}
+
+    static int getStart(int offset, int total) {
+        int start = Math.min(offset, total - 1);
+        if (start < 0) {
+            start = total + start;
+            if (start < 0) {
+                start = 0;
+            }
+        }
+        return start;
+    }
+
+    static int getSize(int start, int limit, int total) {
+        int size = (limit > 0) ? limit : DEFAULT_PAGE_SIZE;
+        return Math.min(size, total - start);
+    }
+}
@@ -4,6 +4,11 @@ import com.parametacorp.jwt.Jwt;
 import com.parametacorp.jwt.Payload;
 import com.parametacorp.util.Converter;
 import com.parametacorp.util.EnumerableMap;
+import com.parametacorp.util.GenerationalMap;
+import com.parametacorp.util.LinkedSet;
+import com.parametacorp.util.RingBuffer;
+import com.parametacorp.util.ShardedCounter;
+import com.parametacorp.util.SparseMerkleTree;
 import score.Address;
 import score.Context;
 import score.DictDB;
@@ -18,12 +23,56 @@ import java.util.Map;
 
 public class PdsPolicy implements Label, Policy, Node {
     private static final BigInteger ONE_ICX = new BigInteger("1000000000000000000");
+    // saturated nodes get a quarter of the weight in select_nodes
+    private static final BigInteger SATURATED_WEIGHT_DIVISOR = BigInteger.valueOf(4);
+    private static final int COUNTER_SHARDS = 16;
+    // maximum number of data entries deleted by a single call of compact_labels
+    private static final int MAX_RECLAIM_ENTRIES = 100;
+    // maximum number of data entries migrated by a single call of migrate_label_data
+    private static final int MAX_MIGRATE_ENTRIES = 100;
+    // number of the latest changes kept for get_changes_since
+    private static final int CHANGE_FEED_SIZE = 4096;
+    // label version of the removed labels
+    private static final long LABEL_REVOKED = -1;
+    // maximum number of policies whose auth records are rewritten when their label is updated
+    private static final int MAX_AUTH_REFRESH = 16;
 
     private final DictDB<String, LabelInfo> labelInfos = Context.newDictDB("labelInfos", LabelInfo.class);
     private final DictDB<String, PolicyInfo> policyInfos = Context.newDictDB("policyInfos", PolicyInfo.class);
+    // policy_id => denormalized policy for is_authorized
+    private final DictDB<String, AuthRecord> authRecords = Context.newDictDB("authRecords", AuthRecord.class);
+    // label_id => version of the label fields copied into the auth records, or LABEL_REVOKED
+    private final DictDB<String, Long> labelVersions = Context.newDictDB("labelVersions", Long.class);
+    // owner DID => running totals of the data in the labels of the owner
+    private final DictDB<String, OwnerUsage> ownerUsages = Context.newDictDB("ownerUsages", OwnerUsage.class);
+    // keccak-256(owner + data_id) => reference count of the data pinned for the labels of the owner
+    private final DictDB<String, SharedPin> sharedPins = Context.newDictDB("sharedPins", SharedPin.class);
+    private final DictDB<String, LabelGroup> labelGroups = Context.newDictDB("labelGroups", LabelGroup.class);
+    // label_id <=> label handle
+    private final LabelHandles labelHandles = new LabelHandles(labelInfos);
+    // label_ids in the order of addition, for the export of the labels
+    private final LinkedSet<String> labelList = new LinkedSet<>("labelList", String.class);
+    // commitments of the policies and the labels for the offline verification
+    private final SparseMerkleTree policyTree = new SparseMerkleTree("policyTree");
+    private final SparseMerkleTree labelTree = new SparseMerkleTree("labelTree");
+    private final SparseMerkleTree groupTree = new SparseMerkleTree("groupTree");
+    private final RingBuffer<ChangeRecord> changeFeed = new RingBuffer<>("changeFeed", ChangeRecord.class, CHANGE_FEED_SIZE);
     private final EnumerableMap<String, NodeInfo> nodeInfos = new EnumerableMap<>("nodeInfos", String.class, NodeInfo.class);
+    // peer_ids in the registration order, for the cursor pagination of the nodes
+    private final LinkedSet<String> nodeList = new LinkedSet<>("nodeList", String.class);
+    private final DictDB<String, NodeCapacity> nodeCapacities = Context.newDictDB("nodeCapacities", NodeCapacity.class);
+    private final NodeHeartbeats heartbeats = new NodeHeartbeats();
+    private final VarDB<BigInteger> heartbeatInterval = Context.newVarDB("heartbeatInterval", BigInteger.class);
+    private final VarDB<BigInteger> totalStake = Context.newVarDB("totalStake", BigInteger.class);
+    private final VarDB<BigInteger> rewardIndex = Context.newVarDB("rewardIndex", BigInteger.class);
+    private final VarDB<BigInteger> undistributedReward = Context.newVarDB("undistributedReward", BigInteger.class);
+    private final VarDB<BigInteger> compactionGracePeriod = Context.newVarDB("compactionGracePeriod", BigInteger.class);
+    private final VarDB<BigInteger> unbondingPeriod = Context.newVarDB("unbondingPeriod", BigInteger.class);
+    // the legacy counters hold the totals counted before sharding, and are never written anymore
     private final VarDB<BigInteger> labelCount = Context.newVarDB("labelCount", BigInteger.class);
     private final VarDB<BigInteger> policyCount = Context.newVarDB("policyCount", BigInteger.class);
+    private final ShardedCounter labelCounter = new ShardedCounter("labelCounter", COUNTER_SHARDS);
+    private final ShardedCounter policyCounter = new ShardedCounter("policyCounter", COUNTER_SHARDS);
     private final VarDB<BigInteger> minStakeForServe = Context.newVarDB("minStakeForServe", BigInteger.class);
     private final VarDB<BigInteger> systemThreshold = Context.newVarDB("systemThreshold", BigInteger.class);
     private final VarDB<Address> didScore = Context.newVarDB("didScore", Address.class);
@@ -32,6 +81,29 @@ public class PdsPolicy implements Label, Policy, Node {
     public PdsPolicy(Address did_score, Address bfs_score) {
         this.didScore.set(did_score);
         this.bfsScore.set(bfs_score);
+
+        if (this.totalStake.get() == null) {
+            // the nodes registered before the reward distribution are counted once on update
+            BigInteger total = BigInteger.ZERO;
+            for (int i = 0; i < nodeInfos.length(); i++) {
+                var stake = nodeInfos.get(nodeInfos.getKey(i)).getStake();
+                if (stake != null) {
+                    total = total.add(stake);
+                }
+            }
+            this.totalStake.set(total);
+        }
+        if (this.nodeList.length() == 0) {
+            // build the ordered lists from the nodes registered before them
+            for (int i = 0; i < nodeInfos.length(); i++) {
+                var nodeInfo = nodeInfos.get(nodeInfos.getKey(i));
+                this.nodeList.add(nodeInfo.getPeer_id());
+                String region = nodeInfo.getRegion();
+                if (region != null && !region.isEmpty()) {
+                    getRegionNodes(region).add(nodeInfo.getPeer_id());
+                }
+            }
+        }
     }
 
     @External(readonly=true)
@@ -78,11 +150,15 @@ public class PdsPolicy implements Label, Policy, Node {
 
     @External(readonly=true)
     public LabelInfo get_label(String label_id) {
-        return this.labelInfos.get(label_id);
+        LabelInfo labelInfo = this.labelInfos.get(label_id);
+        if (labelInfo != null) {
+            labelInfo.resolveDids();
+        }
+        return labelInfo;
     }
 
     private LabelInfo checkLabelId(String label_id) {
-        LabelInfo labelInfo = get_label(label_id);
+        LabelInfo labelInfo = this.labelInfos.get(label_id);
         Context.require(labelInfo != null, "invalid label_id");
         Context.require(!labelInfo.isRevoked(), "label_id is revoked");
         return labelInfo;
@@ -133,6 +209,105 @@ public class PdsPolicy implements Label, Policy, Node {
         Context.require(expireAt.compareTo(blockTimestamp) > 0, "label or producer has expired");
     }
 
+    // returns min(the label's expire_at, the group's expire_at) for a label in a label group
+    private BigInteger effectiveExpireAt(LabelInfo labelInfo) {
+        BigInteger expireAt = labelInfo.getExpire_at();
+        if (labelInfo.getGroup_id() != null) {
+            expireAt = expireAt.min(this.labelGroups.get(labelInfo.getGroup_id()).getExpire_at());
+        }
+        return expireAt;
+    }
+
+    private LabelGroup checkLabelGroup(String group_id) {
+        LabelGroup group = this.labelGroups.get(group_id);
+        Context.require(group != null, "invalid group_id");
+        return group;
+    }
+
+    @External
+    public void add_label_group(String group_id,
+                                BigInteger expire_at,
+                                String owner_sign) {
+        Context.require(!group_id.isEmpty(), "group_id is empty");
+        Context.require(this.labelGroups.get(group_id) == null, "group_id already exists");
+
+        String ownerId = verifySignature(owner_sign, new Payload.Builder("add_label_group")
+                .groupId(group_id)
+                .build());
+
+        BigInteger blockTimestamp = BigInteger.valueOf(Context.getBlockTimestamp());
+        Context.require(expire_at.compareTo(blockTimestamp) > 0, "expire_at must be greater than blockTimestamp");
+
+        long height = Context.getBlockHeight();
+        var group = new LabelGroup(group_id, ownerId, expire_at, height, height);
+        this.labelGroups.set(group_id, group);
+        commitGroup(group);
+        recordChange(ChangeRecord.TYPE_GROUP, group_id);
+        LabelGroupUpdated(group_id, expire_at);
+    }
+
+    @External
+    public void update_group_expiry(String group_id,
+                                    BigInteger expire_at,
+                                    String owner_sign) {
+        Context.require(expire_at != null && expire_at.signum() >= 0, "expire_at should be greater than or equal to 0");
+        LabelGroup group = checkLabelGroup(group_id);
+
+        String ownerId = verifySignature(owner_sign, new Payload.Builder("update_group_expiry")
+                .groupId(group_id)
+                .baseHeight(group.getLast_updated())
+                .build());
+        Context.require(group.getOwner().equals(ownerId), "invalid owner");
+
+        // setting the new expire_at to zero means the member labels will expire immediately.
+        // the member labels are not visited, and the pins in bfs_score still follow the label's expire_at.
+        group.updateExpireAt(expire_at, Context.getBlockHeight());
+        this.labelGroups.set(group_id, group);
+        commitGroup(group);
+        recordChange(ChangeRecord.TYPE_GROUP, group_id);
+        LabelGroupUpdated(group_id, expire_at);
+    }
+
+    @External
+    public void set_label_group(String label_id,
+                                String group_id,
+                                String owner_sign) {
+        var labelInfo = checkLabelId(label_id);
+
+        String ownerId = verifySignature(owner_sign, new Payload.Builder("set_label_group")
+                .labelId(label_id)
+                .groupId(group_id)
+                .baseHeight(labelInfo.getLast_updated())
+                .build());
+        labelInfo.checkOwnerOrThrow(ownerId);
+        // an empty group_id removes the label from its group
+        if (!group_id.isEmpty()) {
+            Context.require(checkLabelGroup(group_id).getOwner().equals(ownerId), "invalid owner of the group");
+        }
+
+        labelInfo.setGroup(group_id.isEmpty() ? null : group_id, Context.getBlockHeight());
+        this.labelInfos.set(label_id, labelInfo);
+        commitLabel(labelInfo);
+        // invalidate the effective expiry of the auth records of this label
+        this.labelVersions.set(label_id, getLabelVersion(label_id) + 1);
+        refreshAuthRecords(labelInfo);
+        recordChange(ChangeRecord.TYPE_LABEL, label_id);
+        LabelUpdated(label_id);
+        emitLabelUpdatedV2(labelInfo);
+    }
+
+    private void emitLabelUpdatedV2(LabelInfo labelInfo) {
+        String groupId = labelInfo.getGroup_id();
+        LabelUpdatedV2(labelInfo.getLabel_id(), labelInfo.getExpire_at(), labelInfo.getProducer(),
+                labelInfo.getProducer_expire_at(), labelInfo.getCategory(), labelInfo.getLast_updated(),
+                (groupId != null) ? groupId : "");
+    }
+
+    @External(readonly=true)
+    public LabelGroup get_label_group(String group_id) {
+        return this.labelGroups.get(group_id);
+    }
+
     @External
     public void add_label(String label_id,
                           String name,
@@ -145,7 +320,9 @@ public class PdsPolicy implements Label, Policy, Node {
                           @Optional String data_id,
                           @Optional BigInteger data_size) {
         Context.require(!label_id.isEmpty(), "label_id is empty");
-        Context.require(get_label(label_id) == null, "label_id already exists");
+        // the separator is reserved for the ids of the child collections of the labels
+        Context.require(label_id.indexOf(GenerationalMap.SEPARATOR) < 0, "invalid label_id");
+        Context.require(this.labelInfos.get(label_id) == null, "label_id already exists");
 
         String ownerId = verifySignature(owner_sign, new Payload.Builder("add_label")
                 .labelId(label_id)
@@ -169,12 +346,20 @@ public class PdsPolicy implements Label, Policy, Node {
                 .producer(producerId)
                 .producerExpireAt(producerExpireAt)
                 .created(Context.getBlockHeight())
+                .dataFormat(GenerationalMap.INDEXED)
+                .handle(labelHandles.intern(label_id))
+                .ownerRef(Dids.intern(ownerId))
+                .producerRef(Dids.intern(producerId))
+                .sharedPins(true)
                 .build();
         this.labelInfos.set(label_id, labelInfo);
+        commitLabel(labelInfo);
+        this.labelList.add(label_id);
+        recordChange(ChangeRecord.TYPE_LABEL, label_id);
         LabelAdded(label_id, ownerId, producerId);
+        LabelAddedV2(label_id, ownerId, producerId, expire_at, producerExpireAt, category, labelInfo.getLast_updated());
 
-        BigInteger total = get_label_count();
-        this.labelCount.set(total.add(BigInteger.ONE));
+        this.labelCounter.add(label_id, 1);
 
         // add data if provided
         if (data_id != null && data_size.signum() > 0) {
@@ -192,15 +377,32 @@ public class PdsPolicy implements Label, Policy, Node {
                 .build());
         labelInfo.checkOwnerOrThrow(ownerId);
 
-        // remove all data and policies associated with this label
+        // remove all data and policies associated with this label,
+        // and the shared pins of the data are released later as the data entries are reclaimed
+        // only the data counted in the usage are subtracted from it
+        var dataCount = labelInfo.countedDataCount();
+        var dataBytes = labelInfo.dataBytes();
         var dataSize = labelInfo.removeDataAll();
-        var policySize = labelInfo.removePolicyAll(policyInfos);
-        this.policyCount.set(get_policy_count().subtract(BigInteger.valueOf(policySize)));
+        if (dataCount > 0) {
+            var usage = getOwnerUsage(labelInfo.getOwner());
+            usage.remove(dataCount, dataBytes);
+            this.ownerUsages.set(labelInfo.getOwner(), usage);
+        }
+        // the proofs of the removed policies must not verify against the later roots
+        for (int i = 0; i < labelInfo.policyCount(); i++) {
+            this.policyTree.remove(SparseMerkleTree.keyOf(labelInfo.getPolicyIdAt(i)));
+        }
+        var policySize = labelInfo.removePolicyAll(policyInfos, authRecords);
+        this.labelVersions.set(label_id, LABEL_REVOKED);
+        this.policyCounter.add(label_id, -policySize);
 
         labelInfo.revoke(Context.getBlockHeight());
         this.labelInfos.set(label_id, labelInfo);
+        commitLabel(labelInfo);
+        recordChange(ChangeRecord.TYPE_LABEL, label_id);
         LabelRemoved(label_id);
-        this.labelCount.set(get_label_count().subtract(BigInteger.ONE));
+        LabelRemovedV2(label_id, labelInfo.getRevoked_at());
+        this.labelCounter.add(label_id, -1);
 
         // revoke the group in bfs_score to unpin data
         if (dataSize > 0) {
@@ -208,6 +410,95 @@ public class PdsPolicy implements Label, Policy, Node {
         }
     }
 
+    @External
+    public void set_compaction_grace_period(BigInteger period) {
+        onlyOwner();
+        Context.require(period.signum() >= 0, "period should be greater than or equal to 0");
+        this.compactionGracePeriod.set(period);
+    }
+
+    @External(readonly=true)
+    public BigInteger get_compaction_grace_period() {
+        // null means the compaction is disabled
+        return this.compactionGracePeriod.get();
+    }
+
+    @External
+    public void compact_labels(String[] label_ids) {
+        BigInteger period = get_compaction_grace_period();
+        Context.require(period != null, "compaction is disabled");
+        long height = Context.getBlockHeight();
+        int budget = MAX_RECLAIM_ENTRIES;
+        for (String labelId : label_ids) {
+            LabelInfo labelInfo = this.labelInfos.get(labelId);
+            // skip the labels not eligible for compaction instead of failing the whole batch
+            if (labelInfo == null || !labelInfo.isRevoked() || labelInfo.isCompacted()) {
+                continue;
+            }
+            if (labelInfo.getRevoked_at() + period.longValue() > height) {
+                continue;
+            }
+            // delete the data entries cleared by remove_label within the budget of this call
+            budget -= labelInfo.hasSharedPins()
+                    ? releaseSharedPins(labelInfo, budget)
+                    : labelInfo.reclaimData(budget);
+            if (!labelInfo.isDataReclaimed()) {
+                break;
+            }
+            labelInfo.compact();
+            this.labelInfos.set(labelId, labelInfo);
+            commitLabel(labelInfo);
+            recordChange(ChangeRecord.TYPE_LABEL, labelId);
+        }
+    }
+
+    @External
+    public void register_labels(String[] label_ids) {
+        // the labels added before the registry are registered by their label_ids, e.g. from the LabelAdded events
+        for (String labelId : label_ids) {
+            if (this.labelInfos.get(labelId) != null) {
+                this.labelList.add(labelId);
+            }
+        }
+    }
+
+    @External(readonly=true)
+    public PageOfLabel export_labels(@Optional long cursor,
+                                     @Optional int limit) {
+        int total = labelList.length();
+        int max = Math.min((limit > 0) ? limit : Paging.DEFAULT_PAGE_SIZE, total);
+        LabelSummary[] buffer = new LabelSummary[max];
+        int size = 0;
+        long seq = cursor;
+        while (size < max) {
+            long next = labelList.next(seq);
+            if (next == 0) {
+                break;
+            }
+            LabelInfo labelInfo = this.labelInfos.get(labelList.get(next));
+            labelInfo.resolveDids();
+            buffer[size++] = new LabelSummary(labelInfo, labelInfo.policyCount(), labelInfo.dataCount());
+            seq = next;
+        }
+        LabelSummary[] labels = new LabelSummary[size];
+        System.arraycopy(buffer, 0, labels, 0, size);
+        // the cursor of the next page is 0 if there are no more labels
+        long nextCursor = (size > 0 && labelList.next(seq) != 0) ? seq : 0;
+        return new PageOfLabel(nextCursor, size, total, labels);
+    }
+
+    @External
+    public void migrate_label_data(String label_id) {
+        LabelInfo labelInfo = checkLabelId(label_id);
+        if (labelInfo.isDataMigrated()) {
+            return;
+        }
+        // the label is written only when the migration starts or completes
+        if (labelInfo.migrateData(MAX_MIGRATE_ENTRIES)) {
+            this.labelInfos.set(label_id, labelInfo);
+        }
+    }
+
     @External
     public void update_label(String label_id,
                              String owner_sign,
@@ -226,7 +517,7 @@ public class PdsPolicy implements Label, Policy, Node {
 
         // check label expiration
         var labelExpireAt = labelInfo.getExpire_at();
-        validateExpireAt(labelExpireAt);
+        validateExpireAt(effectiveExpireAt(labelInfo));
 
         var attrs = new LabelInfo.Builder();
         if (name != null) {
@@ -241,7 +532,9 @@ public class PdsPolicy implements Label, Policy, Node {
             attrs.category(category);
         }
         if (producer != null) {
-            attrs.producer(validateDid(producer));
+            String producerId = validateDid(producer);
+            attrs.producer(producerId)
+                    .producerRef(Dids.intern(producerId));
         }
         if (producer_expire_at.signum() > 0) {
             Context.require(producer_expire_at.compareTo(labelExpireAt) <= 0, "producer_expire_at must be less than equal to expire_at");
@@ -251,9 +544,18 @@ public class PdsPolicy implements Label, Policy, Node {
 
         labelInfo.update(attrs);
         this.labelInfos.set(label_id, labelInfo);
+        if (expireAtUpdated) {
+            // invalidate the effective expiry of the auth records of this label
+            this.labelVersions.set(label_id, getLabelVersion(label_id) + 1);
+            refreshAuthRecords(labelInfo);
+        }
+        commitLabel(labelInfo);
+        recordChange(ChangeRecord.TYPE_LABEL, label_id);
         LabelUpdated(label_id);
+        emitLabelUpdatedV2(labelInfo);
 
         if (expireAtUpdated) {
+            // the shared pins are extended by refresh_shared_pins to bound the cost of this call
             updateGroup(labelInfo.getLabel_id(), labelExpireAt);
         }
     }
@@ -263,31 +565,167 @@ public class PdsPolicy implements Label, Policy, Node {
                          String data_id,
                          String name,
                          BigInteger size,
-                         String producer_sign) {
+                         String producer_sign,
+                         @Optional int chunk_count) {
+        Context.require(chunk_count >= 0, "chunk_count should be greater than or equal to 0");
         var labelInfo = checkLabelId(label_id);
 
         String producer = verifySignature(producer_sign, new Payload.Builder("add_data")
                 .labelId(label_id)
                 .dataId(data_id)
+                .chunkCount(chunk_count)
                 .build());
         Context.require(labelInfo.getProducer().equals(producer), "unauthorized producer");
 
-        // check producer_expire_at
-        validateExpireAt(labelInfo.getProducer_expire_at());
+        // check producer_expire_at, which is bounded by the effective expiration of the label
+        validateExpireAt(labelInfo.getProducer_expire_at().min(effectiveExpireAt(labelInfo)));
 
-        addData(data_id, name, size, labelInfo);
+        addData(data_id, name, size, chunk_count, labelInfo);
     }
 
     private void addData(String dataId, String name, BigInteger size, LabelInfo labelInfo) {
-        var dataInfo = new DataInfo(dataId, name, size);
+        addData(dataId, name, size, 0, labelInfo);
+    }
+
+    // a manifest is added as a single entry, and only its root is pinned
+    private void addData(String dataId, String name, BigInteger size, int chunkCount, LabelInfo labelInfo) {
+        var usage = getOwnerUsage(labelInfo.getOwner());
+        Context.require(usage.allows(size), "quota exceeded");
+        var dataInfo = new DataInfo(dataId, name, size, chunkCount);
         Context.require(labelInfo.addData(dataInfo), "data already exists");
+        usage.add(1, size);
+        this.ownerUsages.set(labelInfo.getOwner(), usage);
         LabelData(labelInfo.getLabel_id(), dataId);
+        recordChange(ChangeRecord.TYPE_LABEL, labelInfo.getLabel_id());
 
+        if (labelInfo.hasSharedPins()) {
+            pinShared(labelInfo, dataId, size, name);
+            return;
+        }
         // pin data by calling bfs_score
         Context.call(get_bfs_score(), "pin",
                 dataId, size, labelInfo.getExpire_at(), labelInfo.getLabel_id(), name);
     }
 
+    private static String sharedPinKey(String owner, String dataId) {
+        return Converter.bytesToHex(Context.hash("keccak-256", (owner + dataId).getBytes()), 0, 16);
+    }
+
+    private void pinShared(LabelInfo labelInfo, String dataId, BigInteger size, String name) {
+        var key = sharedPinKey(labelInfo.getOwner(), dataId);
+        var pin = this.sharedPins.get(key);
+        if (pin == null) {
+            // the first reference pins the data in the group of the shared pin
+            pin = new SharedPin(1, labelInfo.getExpire_at());
+            Context.call(get_bfs_score(), "pin",
+                    dataId, size, labelInfo.getExpire_at(), key, name);
+        } else if (pin.addRef(labelInfo.getExpire_at())) {
+            updateGroup(key, pin.getExpire_at());
+        }
+        this.sharedPins.set(key, pin);
+    }
+
+    private void releaseSharedPin(String key) {
+        var pin = this.sharedPins.get(key);
+        if (pin == null) {
+            return;
+        }
+        if (pin.release()) {
+            // revoke the group in bfs_score to unpin the data
+            this.sharedPins.set(key, null);
+            updateGroup(key, BigInteger.ONE);
+        } else {
+            this.sharedPins.set(key, pin);
+        }
+    }
+
+    // releases the shared pins of the removed data while reclaiming their entries, and returns the number of entries
+    private int releaseSharedPins(LabelInfo labelInfo, int maxEntries) {
+        String owner = labelInfo.getOwner();
+        int count = 0;
+        while (count < maxEntries) {
+            String dataId = labelInfo.nextReclaimedDataId();
+            if (dataId == null) {
+                break;
+            }
+            releaseSharedPin(sharedPinKey(owner, dataId));
+            count += labelInfo.reclaimData(1);
+        }
+        // skip the empty generations if any
+        return count + labelInfo.reclaimData(maxEntries - count);
+    }
+
+    @External
+    public void release_shared_pins(String label_id) {
+        LabelInfo labelInfo = this.labelInfos.get(label_id);
+        Context.require(labelInfo != null, "invalid label_id");
+        Context.require(labelInfo.isRevoked(), "label_id is not revoked");
+        if (labelInfo.hasSharedPins()) {
+            releaseSharedPins(labelInfo, MAX_RECLAIM_ENTRIES);
+        }
+    }
+
+    @External
+    public void refresh_shared_pins(String label_id, String[] data_ids) {
+        var labelInfo = checkLabelId(label_id);
+        Context.require(data_ids.length <= MAX_RECLAIM_ENTRIES, "too many data_ids");
+        if (!labelInfo.hasSharedPins()) {
+            return;
+        }
+        String owner = labelInfo.getOwner();
+        for (String dataId : data_ids) {
+            // skip the data not in the label, so the pins of the other labels are not extended by this label
+            if (labelInfo.getData(dataId) == null) {
+                continue;
+            }
+            var key = sharedPinKey(owner, dataId);
+            var pin = this.sharedPins.get(key);
+            if (pin != null && pin.extend(labelInfo.getExpire_at())) {
+                updateGroup(key, pin.getExpire_at());
+                this.sharedPins.set(key, pin);
+            }
+        }
+    }
+
+    @External(readonly=true)
+    public SharedPin get_shared_pin(String owner, String data_id) {
+        return this.sharedPins.get(sharedPinKey(owner, data_id));
+    }
+
+    private OwnerUsage getOwnerUsage(String owner) {
+        var usage = this.ownerUsages.get(owner);
+        return (usage != null) ? usage : OwnerUsage.empty();
+    }
+
+    @External(readonly=true)
+    public Map<String, Object> get_label_usage(String label_id) {
+        var labelInfo = checkLabelId(label_id);
+        return Map.of(
+                "data_count", labelInfo.dataCount(),
+                "data_bytes", labelInfo.dataBytes());
+    }
+
+    @External(readonly=true)
+    public OwnerUsage get_owner_usage(String owner) {
+        return getOwnerUsage(owner);
+    }
+
+    @External
+    public void set_owner_quota(BigInteger quota, String owner_sign) {
+        Context.require(quota.signum() >= 0, "quota should be greater than or equal to 0");
+        // the base height of the payload comes from the usage of the signer
+        var sigChecker = new SignatureChecker();
+        Context.require(sigChecker.verifySig(get_did_score(), owner_sign), "failed to verify signature");
+        String ownerId = sigChecker.getOwnerId();
+        var usage = getOwnerUsage(ownerId);
+        Context.require(sigChecker.validatePayload(new Payload.Builder("set_owner_quota")
+                .quota(quota)
+                .baseHeight(usage.getLast_updated())
+                .build()), "failed to validate payload");
+        usage.setQuota(quota, Context.getBlockHeight());
+        this.ownerUsages.set(ownerId, usage);
+    }
+
     private void updateGroup(String labelId, BigInteger expireAt) {
         // update group expires at bfs_score
         Context.call(get_bfs_score(), "update_group", labelId, expireAt);
@@ -309,11 +747,15 @@ public class PdsPolicy implements Label, Policy, Node {
 
     @External(readonly=true)
     public PolicyInfo get_policy(String policy_id) {
-        return this.policyInfos.get(policy_id);
+        PolicyInfo policyInfo = this.policyInfos.get(policy_id);
+        if (policyInfo != null) {
+            policyInfo.resolveDids();
+        }
+        return policyInfo;
     }
 
     private PolicyInfo checkPolicyId(String policy_id) {
-        PolicyInfo policyInfo = get_policy(policy_id);
+        PolicyInfo policyInfo = this.policyInfos.get(policy_id);
         Context.require(policyInfo != null, "invalid policy_id");
         return policyInfo;
     }
@@ -332,6 +774,19 @@ public class PdsPolicy implements Label, Policy, Node {
         Context.require(expected.equals(policyId), "invalid policy_id, expected=" + expected);
     }
 
+    private String createPolicyId(String type, String ownerId, String nonce) {
+        // Keccak-256(type + "|" + owner + "|" + nonce)[0:16]
+        // the type separates the namespaces of the group and the scoped policies from the ids of add_policy,
+        // and the owner keeps the others from taking the ids of the owner
+        var msgBytes = (type + "|" + ownerId + "|" + nonce).getBytes();
+        return Converter.bytesToHex(Context.hash("keccak-256", msgBytes), 0, 16);
+    }
+
+    private void validatePolicyId(String policyId, String type, String ownerId, String nonce) {
+        var expected = createPolicyId(type, ownerId, nonce);
+        Context.require(expected.equals(policyId), "invalid policy_id, expected=" + expected);
+    }
+
     @External
     public void add_policy(String policy_id,
                            String label_id,
@@ -341,9 +796,10 @@ public class PdsPolicy implements Label, Policy, Node {
                            String owner_sign,
                            @Optional BigInteger expire_at) {
         Context.require(!policy_id.isEmpty(), "policy_id is empty");
-        Context.require(get_policy(policy_id) == null, "policy_id already exists");
+        Context.require(this.policyInfos.get(policy_id) == null, "policy_id already exists");
         LabelInfo labelInfo = checkLabelId(label_id);
-        validatePolicyId(policy_id, label_id, getConsumerPubkey(consumer));
+        byte[] consumerKey = getConsumerPubkey(consumer);
+        validatePolicyId(policy_id, label_id, consumerKey);
         validateThreshold(threshold);
 
         String ownerId = verifySignature(owner_sign, new Payload.Builder("add_policy")
@@ -354,7 +810,8 @@ public class PdsPolicy implements Label, Policy, Node {
 
         BigInteger blockTimestamp = BigInteger.valueOf(Context.getBlockTimestamp());
         BigInteger expireAt = (expire_at.signum() == 0) ? labelInfo.getExpire_at() : expire_at;
-        Context.require(expireAt.compareTo(blockTimestamp) > 0, "expire_at must be greater than blockTimestamp");
+        // the label group may have expired the label before its own expire_at
+        Context.require(expireAt.min(effectiveExpireAt(labelInfo)).compareTo(blockTimestamp) > 0, "expire_at must be greater than blockTimestamp");
         Context.require(expireAt.compareTo(labelInfo.getExpire_at()) <= 0, "expire_at must be less than equal to the label's expire_at");
 
         var policyInfo = new PolicyInfo.Builder()
@@ -362,6 +819,8 @@ public class PdsPolicy implements Label, Policy, Node {
                 .labelId(label_id)
                 .name(name)
                 .consumer(consumer)
+                .consumerRef(Dids.intern(consumer))
+                .consumerKey(consumerKey)
                 .threshold(threshold)
                 .expireAt(expireAt)
                 .created(Context.getBlockHeight())
@@ -369,10 +828,204 @@ public class PdsPolicy implements Label, Policy, Node {
 
         labelInfo.addPolicyId(policy_id);
         this.policyInfos.set(policy_id, policyInfo);
+        writeAuthRecord(policyInfo, labelInfo);
+        commitPolicy(policyInfo);
+        recordChange(ChangeRecord.TYPE_POLICY, policy_id);
         PolicyAdded(policy_id, label_id, consumer);
+        emitPolicyAddedV2(policyInfo);
+        this.policyCounter.add(label_id, 1);
+    }
+
+    private void addGroupConsumers(PolicyInfo policyInfo, String[] consumers) {
+        for (String consumer : consumers) {
+            // ensure the consumer has a valid public key
+            getConsumerPubkey(consumer);
+            policyInfo.addConsumer(consumer);
+        }
+    }
+
+    @External
+    public void add_group_policy(String policy_id,
+                                 String label_id,
+                                 String name,
+                                 String[] consumers,
+                                 BigInteger threshold,
+                                 String nonce,
+                                 String owner_sign,
+                                 @Optional BigInteger expire_at) {
+        Context.require(!policy_id.isEmpty(), "policy_id is empty");
+        Context.require(this.policyInfos.get(policy_id) == null, "policy_id already exists");
+        Context.require(consumers.length > 0, "consumers is empty");
+        LabelInfo labelInfo = checkLabelId(label_id);
+        validateThreshold(threshold);
+
+        String ownerId = verifySignature(owner_sign, new Payload.Builder("add_group_policy")
+                .labelId(label_id)
+                .policyId(policy_id)
+                .consumers(consumers)
+                .build());
+        labelInfo.checkOwnerOrThrow(ownerId);
+        validatePolicyId(policy_id, "group", ownerId, nonce);
+
+        BigInteger blockTimestamp = BigInteger.valueOf(Context.getBlockTimestamp());
+        BigInteger expireAt = (expire_at.signum() == 0) ? labelInfo.getExpire_at() : expire_at;
+        // the label group may have expired the label before its own expire_at
+        Context.require(expireAt.min(effectiveExpireAt(labelInfo)).compareTo(blockTimestamp) > 0, "expire_at must be greater than blockTimestamp");
+        Context.require(expireAt.compareTo(labelInfo.getExpire_at()) <= 0, "expire_at must be less than equal to the label's expire_at");
+
+        var policyInfo = new PolicyInfo.Builder()
+                .policyId(policy_id)
+                .labelId(label_id)
+                .name(name)
+                .threshold(threshold)
+                .expireAt(expireAt)
+                .created(Context.getBlockHeight())
+                .type(PolicyInfo.TYPE_GROUP)
+                .build();
+        addGroupConsumers(policyInfo, consumers);
+
+        labelInfo.addPolicyId(policy_id);
+        this.policyInfos.set(policy_id, policyInfo);
+        writeAuthRecord(policyInfo, labelInfo);
+        commitPolicy(policyInfo);
+        recordChange(ChangeRecord.TYPE_POLICY, policy_id);
+        PolicyAdded(policy_id, label_id, "");
+        emitPolicyAddedV2(policyInfo);
+        this.policyCounter.add(label_id, 1);
+    }
+
+    @External
+    public void add_scoped_policy(String policy_id,
+                                  String name,
+                                  String consumer,
+                                  BigInteger threshold,
+                                  BigInteger expire_at,
+                                  String nonce,
+                                  String owner_sign,
+                                  @Optional String[] label_ids,
+                                  @Optional String category) {
+        Context.require(!policy_id.isEmpty(), "policy_id is empty");
+        Context.require(this.policyInfos.get(policy_id) == null, "policy_id already exists");
+        Context.require((label_ids == null) != (category == null), "either label_ids or category must be given");
+        Context.require(label_ids == null || label_ids.length > 0, "label_ids is empty");
+        // ensure the consumer has a valid public key
+        byte[] consumerKey = getConsumerPubkey(consumer);
+        validateThreshold(threshold);
+
+        String ownerId = verifySignature(owner_sign, new Payload.Builder("add_scoped_policy")
+                .policyId(policy_id)
+                .labelIds(label_ids)
+                .category(category)
+                .build());
+        validatePolicyId(policy_id, "scoped", ownerId, nonce);
+
+        // a scoped policy is not bound to a single label, so it must have its own expiration
+        BigInteger blockTimestamp = BigInteger.valueOf(Context.getBlockTimestamp());
+        Context.require(expire_at.compareTo(blockTimestamp) > 0, "expire_at must be greater than blockTimestamp");
+
+        var policyInfo = new PolicyInfo.Builder()
+                .policyId(policy_id)
+                .name(name)
+                .consumer(consumer)
+                .consumerRef(Dids.intern(consumer))
+                .consumerKey(consumerKey)
+                .threshold(threshold)
+                .expireAt(expire_at)
+                .created(Context.getBlockHeight())
+                .type((label_ids != null) ? PolicyInfo.TYPE_LABELS : PolicyInfo.TYPE_CATEGORY)
+                .owner(ownerId)
+                .ownerRef(Dids.intern(ownerId))
+                .category(category)
+                .build();
+        if (label_ids != null) {
+            for (String labelId : label_ids) {
+                checkLabelId(labelId).checkOwnerOrThrow(ownerId);
+                policyInfo.addLabelId(labelId);
+            }
+        }
+
+        this.policyInfos.set(policy_id, policyInfo);
+        commitPolicy(policyInfo);
+        recordChange(ChangeRecord.TYPE_POLICY, policy_id);
+        PolicyAdded(policy_id, "", consumer);
+        emitPolicyAddedV2(policyInfo);
+        this.policyCounter.add(policy_id, 1);
+    }
+
+    @External
+    public void remove_scoped_policy(String policy_id,
+                                     String owner_sign) {
+        PolicyInfo policyInfo = checkPolicyId(policy_id);
+        Context.require(policyInfo.isScoped(), "not a scoped policy");
+
+        String ownerId = verifySignature(owner_sign, new Payload.Builder("remove_scoped_policy")
+                .policyId(policy_id)
+                .baseHeight(policyInfo.getLast_updated())
+                .build());
+        Context.require(policyInfo.getOwner().equals(ownerId), "invalid owner");
+
+        policyInfo.removeLabelIdAll();
+        this.policyInfos.set(policy_id, null);
+        this.policyTree.remove(SparseMerkleTree.keyOf(policy_id));
+        recordChange(ChangeRecord.TYPE_POLICY, policy_id);
+        PolicyRemoved(policy_id);
+        // counted with the same key as in add_scoped_policy
+        this.policyCounter.add(policy_id, -1);
+    }
+
+    private PolicyInfo checkGroupPolicy(String policy_id, String method, String[] consumers, String owner_sign) {
+        PolicyInfo policyInfo = checkPolicyId(policy_id);
+        Context.require(policyInfo.isGroup(), "not a group policy");
+        LabelInfo labelInfo = checkLabelId(policyInfo.getLabel_id());
 
-        BigInteger total = get_policy_count();
-        this.policyCount.set(total.add(BigInteger.ONE));
+        String ownerId = verifySignature(owner_sign, new Payload.Builder(method)
+                .policyId(policy_id)
+                .consumers(consumers)
+                .baseHeight(policyInfo.getLast_updated())
+                .build());
+        labelInfo.checkOwnerOrThrow(ownerId);
+        return policyInfo;
+    }
+
+    @External
+    public void add_policy_consumers(String policy_id,
+                                     String[] consumers,
+                                     String owner_sign) {
+        PolicyInfo policyInfo = checkGroupPolicy(policy_id, "add_policy_consumers", consumers, owner_sign);
+        addGroupConsumers(policyInfo, consumers);
+
+        policyInfo.update(new PolicyInfo.Builder().lastUpdated(Context.getBlockHeight()));
+        this.policyInfos.set(policy_id, policyInfo);
+        refreshAuthRecord(policyInfo);
+        recordChange(ChangeRecord.TYPE_POLICY, policy_id);
+        PolicyUpdated(policy_id);
+        PolicyUpdatedV2(policy_id, policyInfo.getExpire_at(), policyInfo.getLast_updated());
+    }
+
+    @External
+    public void remove_policy_consumers(String policy_id,
+                                        String[] consumers,
+                                        String owner_sign) {
+        PolicyInfo policyInfo = checkGroupPolicy(policy_id, "remove_policy_consumers", consumers, owner_sign);
+        for (String consumer : consumers) {
+            policyInfo.removeConsumer(consumer);
+        }
+
+        policyInfo.update(new PolicyInfo.Builder().lastUpdated(Context.getBlockHeight()));
+        this.policyInfos.set(policy_id, policyInfo);
+        refreshAuthRecord(policyInfo);
+        recordChange(ChangeRecord.TYPE_POLICY, policy_id);
+        PolicyUpdated(policy_id);
+        PolicyUpdatedV2(policy_id, policyInfo.getExpire_at(), policyInfo.getLast_updated());
+    }
+
+    @External(readonly=true)
+    public PageOfConsumer get_policy_consumers(String policy_id,
+                                               int offset,
+                                               @Optional int limit) {
+        PolicyInfo policyInfo = checkPolicyId(policy_id);
+        Context.require(policyInfo.isGroup(), "not a group policy");
+        return policyInfo.getConsumersPage(offset, limit);
     }
 
     @External
@@ -380,17 +1033,21 @@ public class PdsPolicy implements Label, Policy, Node {
                               BigInteger expire_at,
                               String owner_sign) {
         PolicyInfo policyInfo = checkPolicyId(policy_id);
-        LabelInfo labelInfo = checkLabelId(policyInfo.getLabel_id());
+        LabelInfo labelInfo = policyInfo.isScoped() ? null : checkLabelId(policyInfo.getLabel_id());
 
         String ownerId = verifySignature(owner_sign, new Payload.Builder("update_policy")
                 .policyId(policy_id)
                 .baseHeight(policyInfo.getLast_updated())
                 .build());
-        labelInfo.checkOwnerOrThrow(ownerId);
-
-        // new expire_at can be any value within the label's expire_at.
-        // setting the new expire_at to zero means the policy will expire immediately.
-        Context.require(expire_at.compareTo(labelInfo.getExpire_at()) <= 0, "expire_at must be less than equal to the label's expire_at");
+        if (labelInfo != null) {
+            labelInfo.checkOwnerOrThrow(ownerId);
+
+            // new expire_at can be any value within the label's expire_at.
+            // setting the new expire_at to zero means the policy will expire immediately.
+            Context.require(expire_at.compareTo(labelInfo.getExpire_at()) <= 0, "expire_at must be less than equal to the label's expire_at");
+        } else {
+            Context.require(policyInfo.getOwner().equals(ownerId), "invalid owner");
+        }
 
         var attrs = new PolicyInfo.Builder()
                 .expireAt(expire_at);
@@ -398,27 +1055,142 @@ public class PdsPolicy implements Label, Policy, Node {
 
         policyInfo.update(attrs);
         this.policyInfos.set(policy_id, policyInfo);
+        if (labelInfo != null) {
+            writeAuthRecord(policyInfo, labelInfo);
+        }
+        commitPolicy(policyInfo);
+        recordChange(ChangeRecord.TYPE_POLICY, policy_id);
         PolicyUpdated(policy_id);
+        PolicyUpdatedV2(policy_id, policyInfo.getExpire_at(), policyInfo.getLast_updated());
+    }
+
+    private void emitPolicyAddedV2(PolicyInfo policyInfo) {
+        PolicyAddedV2(policyInfo.getPolicy_id(),
+                (policyInfo.getLabel_id() != null) ? policyInfo.getLabel_id() : "",
+                (policyInfo.getConsumer() != null) ? policyInfo.getConsumer() : "",
+                policyInfo.getThreshold(),
+                policyInfo.getExpire_at(),
+                policyInfo.getType(),
+                policyInfo.getLast_updated());
+    }
+
+    private long getLabelVersion(String labelId) {
+        Long version = this.labelVersions.get(labelId);
+        return (version != null) ? version : 0;
+    }
+
+    private void writeAuthRecord(PolicyInfo policyInfo, LabelInfo labelInfo) {
+        BigInteger policyExpireAt = policyInfo.getExpire_at();
+        BigInteger labelExpireAt = labelInfo.getExpire_at();
+        this.authRecords.set(policyInfo.getPolicy_id(), new AuthRecord(
+                labelInfo.getLabel_id(),
+                policyInfo.isGroup() ? null : AuthRecord.hashOf(policyInfo.getConsumer()),
+                policyExpireAt,
+                policyExpireAt.min(labelExpireAt),
+                getLabelVersion(labelInfo.getLabel_id()),
+                labelInfo.getGroup_id()));
+    }
+
+    // rewrites the auth records of a label with a few policies right after the label version is bumped,
+    // so is_authorized stays on the fast path. The others are rewritten by the next write of the policy,
+    // or by commit_records.
+    private void refreshAuthRecords(LabelInfo labelInfo) {
+        int size = labelInfo.policyCount();
+        if (size > MAX_AUTH_REFRESH) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            String policyId = labelInfo.getPolicyIdAt(i);
+            PolicyInfo policyInfo = this.policyInfos.get(policyId);
+            if (policyInfo != null && this.authRecords.get(policyId) != null) {
+                writeAuthRecord(policyInfo, labelInfo);
+            }
+        }
+    }
+
+    private boolean isStaleAuthRecord(AuthRecord auth) {
+        long version = getLabelVersion(auth.getLabel_id());
+        return version != LABEL_REVOKED && version != auth.getLabel_version();
+    }
+
+    // rewrites the auth record of the policy if its label has been updated since the record was written
+    private void refreshAuthRecord(PolicyInfo policyInfo) {
+        AuthRecord auth = this.authRecords.get(policyInfo.getPolicy_id());
+        if (auth != null && isStaleAuthRecord(auth)) {
+            writeAuthRecord(policyInfo, this.labelInfos.get(auth.getLabel_id()));
+        }
     }
 
     @External(readonly=true)
-    public Map<String, Object> check_policy(String policy_id) {
-        PolicyInfo policyInfo = checkPolicyId(policy_id);
-        LabelInfo labelInfo = checkLabelId(policyInfo.getLabel_id());
+    public boolean is_authorized(String policy_id, String consumer) {
+        AuthRecord auth = this.authRecords.get(policy_id);
+        if (auth == null) {
+            // the policies added before the auth records, or the scoped policies
+            PolicyInfo policyInfo = this.policyInfos.get(policy_id);
+            return policyInfo != null && isAuthorized(policyInfo, consumer);
+        }
+        long version = getLabelVersion(auth.getLabel_id());
+        if (version == LABEL_REVOKED) {
+            return false;
+        }
+        BigInteger expireAt = auth.getExpire_at();
+        if (version != auth.getLabel_version()) {
+            // the label expiration or the label group has been updated since the record was written
+            LabelInfo labelInfo = this.labelInfos.get(auth.getLabel_id());
+            expireAt = auth.getPolicy_expire_at().min(effectiveExpireAt(labelInfo));
+        } else if (auth.getLabel_group() != null) {
+            // the group expiration is not copied into the record, since it is updated without visiting the labels
+            expireAt = expireAt.min(this.labelGroups.get(auth.getLabel_group()).getExpire_at());
+        }
+        if (BigInteger.valueOf(Context.getBlockTimestamp()).compareTo(expireAt) >= 0) {
+            return false;
+        }
+        return auth.isGroup() ? PolicyInfo.isGroupConsumer(policy_id, consumer) : auth.isConsumer(consumer);
+    }
+
+    // checks the policy without the auth record, and returns false instead of reverting for an unusable label
+    private boolean isAuthorized(PolicyInfo policyInfo, String consumer) {
+        BigInteger expireAt = policyInfo.getExpire_at();
+        if (!policyInfo.isScoped()) {
+            LabelInfo labelInfo = this.labelInfos.get(policyInfo.getLabel_id());
+            if (labelInfo == null || labelInfo.isRevoked()) {
+                return false;
+            }
+            expireAt = expireAt.min(effectiveExpireAt(labelInfo));
+        }
+        // a scoped policy has its own expiration, and the labels in its scope are checked by check_policy_on
+        if (BigInteger.valueOf(Context.getBlockTimestamp()).compareTo(expireAt) >= 0) {
+            return false;
+        }
+        return policyInfo.hasConsumer(consumer);
+    }
+
+    private Map<String, Object> checkPolicy(PolicyInfo policyInfo, LabelInfo labelInfo, String consumer) {
         boolean checked = false;
 
-        BigInteger labelExpireAt = labelInfo.getExpire_at();
+        BigInteger labelExpireAt = effectiveExpireAt(labelInfo);
         BigInteger policyExpireAt = policyInfo.getExpire_at();
         BigInteger current = BigInteger.valueOf(Context.getBlockTimestamp());
         if (current.compareTo(policyExpireAt) < 0 && current.compareTo(labelExpireAt) < 0) {
             // not expired: valid policy
-            checked = true;
+            checked = policyInfo.covers(labelInfo)
+                    && ((consumer == null) || policyInfo.hasConsumer(consumer));
+        }
+        if (consumer == null) {
+            // a group policy has no single consumer, use check_policy_for instead
+            consumer = policyInfo.isGroup() ? "" : policyInfo.getConsumer();
+        }
+        // the group policies and the policies added before the key snapshot have no consumer key
+        byte[] consumerKey = policyInfo.getConsumer_key();
+        if (consumerKey == null) {
+            consumerKey = new byte[0];
         }
 
         return Map.ofEntries(
                 Map.entry("owner", labelInfo.getOwner()),
-                Map.entry("consumer", policyInfo.getConsumer()),
-                Map.entry("policy_id", policy_id),
+                Map.entry("consumer", consumer),
+                Map.entry("consumer_key", consumerKey),
+                Map.entry("policy_id", policyInfo.getPolicy_id()),
                 Map.entry("label_id", labelInfo.getLabel_id()),
                 Map.entry("checked", checked),
                 Map.entry("expire_at", policyExpireAt),
@@ -426,6 +1198,29 @@ public class PdsPolicy implements Label, Policy, Node {
         );
     }
 
+    private LabelInfo checkPolicyLabel(PolicyInfo policyInfo) {
+        Context.require(!policyInfo.isScoped(), "scoped policy needs label_id, use check_policy_on");
+        return checkLabelId(policyInfo.getLabel_id());
+    }
+
+    @External(readonly=true)
+    public Map<String, Object> check_policy(String policy_id) {
+        PolicyInfo policyInfo = checkPolicyId(policy_id);
+        return checkPolicy(policyInfo, checkPolicyLabel(policyInfo), null);
+    }
+
+    @External(readonly=true)
+    public Map<String, Object> check_policy_for(String policy_id, String consumer) {
+        PolicyInfo policyInfo = checkPolicyId(policy_id);
+        return checkPolicy(policyInfo, checkPolicyLabel(policyInfo), consumer);
+    }
+
+    @External(readonly=true)
+    public Map<String, Object> check_policy_on(String policy_id, String label_id) {
+        PolicyInfo policyInfo = checkPolicyId(policy_id);
+        return checkPolicy(policyInfo, checkLabelId(label_id), null);
+    }
+
     @External(readonly=true)
     public PageOfPolicy get_policy_list(String label_id,
                                         int offset,
@@ -446,12 +1241,29 @@ public class PdsPolicy implements Label, Policy, Node {
         return nodeInfo;
     }
 
+    private LinkedSet<String> getRegionNodes(String region) {
+        return new LinkedSet<>("regionNodes_" + region, String.class);
+    }
+
+    private void setNodeRegion(NodeInfo nodeInfo, String region) {
+        // keep the region index consistent with the node record
+        String oldRegion = nodeInfo.getRegion();
+        if (oldRegion != null && !oldRegion.isEmpty()) {
+            getRegionNodes(oldRegion).remove(nodeInfo.getPeer_id());
+        }
+        if (region != null && !region.isEmpty()) {
+            getRegionNodes(region).add(nodeInfo.getPeer_id());
+        }
+        nodeInfo.setRegion(region);
+    }
+
     @External
     @Payable
     public void add_node(String peer_id,
                          String name,
                          String endpoint,
-                         @Optional Address owner) {
+                         @Optional Address owner,
+                         @Optional String region) {
         Context.require(!peer_id.isEmpty(), "peer_id is empty");
         Context.require(this.nodeInfos.get(peer_id) == null, "peer_id already exists");
 
@@ -465,14 +1277,31 @@ public class PdsPolicy implements Label, Policy, Node {
         }
         Address ownerAddress = (owner == null) ? Context.getCaller() : owner;
         NodeInfo nodeInfo = new NodeInfo(peer_id, name, endpoint, ownerAddress, Context.getBlockHeight(), stake, BigInteger.ZERO);
+        nodeInfo.startAccruing(get_reward_index());
+        if (region != null) {
+            setNodeRegion(nodeInfo, region);
+        }
         this.nodeInfos.set(peer_id, nodeInfo);
+        recordChange(ChangeRecord.TYPE_NODE, peer_id);
+        this.nodeList.add(peer_id);
+        this.totalStake.set(get_total_stake().add(stake));
         NodeAdded(peer_id, ownerAddress, endpoint);
     }
 
     @External
     public void remove_node(String peer_id) {
-        checkPeerId(peer_id);
+        NodeInfo nodeInfo = checkPeerId(peer_id);
+        nodeInfo.settleReward(get_reward_index());
+        payReward(nodeInfo);
+        this.totalStake.set(get_total_stake().subtract(nodeInfo.getStake()));
+        unbond(nodeInfo, nodeInfo.getStake());
+
+        setNodeRegion(nodeInfo, null);
         this.nodeInfos.remove(peer_id);
+        recordChange(ChangeRecord.TYPE_NODE, peer_id);
+        this.nodeList.remove(peer_id);
+        this.nodeCapacities.set(peer_id, null);
+        this.heartbeats.release(peer_id);
         NodeRemoved(peer_id);
     }
 
@@ -481,7 +1310,8 @@ public class PdsPolicy implements Label, Policy, Node {
     public void update_node(String peer_id,
                             @Optional Address owner,
                             @Optional String name,
-                            @Optional String endpoint) {
+                            @Optional String endpoint,
+                            @Optional String region) {
         NodeInfo nodeInfo = checkPeerId(peer_id);
 
         BigInteger stake = nodeInfo.getStake();
@@ -492,11 +1322,131 @@ public class PdsPolicy implements Label, Policy, Node {
         Context.require(stake.compareTo(ONE_ICX.multiply(minStake)) >= 0, "needs at least " + minStake + " ICX to update a node");
 
         Address ownerAddress = (owner == null) ? Context.getCaller() : owner;
-        nodeInfo.update(name, endpoint, ownerAddress, stake, BigInteger.ZERO);
+        nodeInfo.settleReward(get_reward_index());
+        this.totalStake.set(get_total_stake().add(stake.subtract(nodeInfo.getStake())));
+        nodeInfo.update(name, endpoint, ownerAddress, stake, null);
+        if (region != null && !region.equals(nodeInfo.getRegion())) {
+            setNodeRegion(nodeInfo, region);
+        }
         this.nodeInfos.set(peer_id, nodeInfo);
+        recordChange(ChangeRecord.TYPE_NODE, peer_id);
         NodeUpdated(peer_id, ownerAddress, endpoint);
     }
 
+    @External
+    public void set_unbonding_period(BigInteger period) {
+        onlyOwner();
+        Context.require(period.signum() >= 0, "period should be greater than or equal to 0");
+        this.unbondingPeriod.set(period);
+    }
+
+    @External(readonly=true)
+    public BigInteger get_unbonding_period() {
+        return this.unbondingPeriod.getOrDefault(BigInteger.ZERO);
+    }
+
+    private void unbond(NodeInfo nodeInfo, BigInteger amount) {
+        if (amount == null || amount.signum() <= 0) {
+            return;
+        }
+        var queue = new UnbondingQueue(nodeInfo.getOwner());
+        long unlockHeight = queue.enqueue(amount, Context.getBlockHeight() + get_unbonding_period().longValue());
+        StakeUnbonding(nodeInfo.getPeer_id(), nodeInfo.getOwner(), amount, BigInteger.valueOf(unlockHeight));
+    }
+
+    @External
+    public void unstake(String peer_id, BigInteger amount) {
+        NodeInfo nodeInfo = checkPeerId(peer_id);
+        Context.require(amount.signum() > 0, "amount should be greater than 0");
+        BigInteger stake = nodeInfo.getStake().subtract(amount);
+        Context.require(stake.signum() >= 0, "amount exceeds the stake");
+        BigInteger minStake = get_min_stake_value();
+        Context.require(stake.compareTo(ONE_ICX.multiply(minStake)) >= 0, "needs at least " + minStake + " ICX to keep a node");
+
+        nodeInfo.settleReward(get_reward_index());
+        this.totalStake.set(get_total_stake().subtract(amount));
+        nodeInfo.update(null, null, null, stake, null);
+        this.nodeInfos.set(peer_id, nodeInfo);
+        recordChange(ChangeRecord.TYPE_NODE, peer_id);
+        unbond(nodeInfo, amount);
+    }
+
+    @External
+    public void claim_unbonded() {
+        Address owner = Context.getCaller();
+        BigInteger amount = new UnbondingQueue(owner).claim(Context.getBlockHeight());
+        Context.require(amount.signum() > 0, "nothing to claim");
+        Context.transfer(owner, amount);
+        UnbondingClaimed(owner, amount);
+    }
+
+    @External(readonly=true)
+    public Map<String, Object> get_unbonding(Address owner) {
+        var queue = new UnbondingQueue(owner);
+        long height = Context.getBlockHeight();
+        return Map.of(
+                "locked", queue.getLocked(height),
+                "claimable", queue.getClaimable(height)
+        );
+    }
+
+    @External(readonly=true)
+    public BigInteger get_total_stake() {
+        return this.totalStake.getOrDefault(BigInteger.ZERO);
+    }
+
+    @External(readonly=true)
+    public BigInteger get_reward_index() {
+        return this.rewardIndex.getOrDefault(BigInteger.ZERO);
+    }
+
+    @External
+    @Payable
+    public void deposit_reward() {
+        BigInteger amount = Context.getValue();
+        Context.require(amount.signum() > 0, "amount should be greater than 0");
+        RewardDeposited(Context.getCaller(), amount);
+
+        BigInteger stake = get_total_stake();
+        BigInteger reward = amount.add(this.undistributedReward.getOrDefault(BigInteger.ZERO));
+        if (stake.signum() == 0) {
+            // keep the reward until there is a stake to distribute it
+            this.undistributedReward.set(reward);
+            return;
+        }
+        // a single update of the index distributes the reward to all nodes in proportion to their stake,
+        // and each node settles its share lazily on its next update or claim
+        BigInteger delta = reward.multiply(NodeInfo.REWARD_INDEX_SCALE).divide(stake);
+        this.rewardIndex.set(get_reward_index().add(delta));
+        this.undistributedReward.set(null);
+    }
+
+    private void payReward(NodeInfo nodeInfo) {
+        BigInteger amount = nodeInfo.claimReward();
+        if (amount.signum() > 0) {
+            Context.transfer(nodeInfo.getOwner(), amount);
+            RewardClaimed(nodeInfo.getPeer_id(), nodeInfo.getOwner(), amount);
+        }
+    }
+
+    @External
+    public void claim_reward(String peer_id) {
+        NodeInfo nodeInfo = checkPeerId(peer_id);
+        nodeInfo.settleReward(get_reward_index());
+        payReward(nodeInfo);
+        this.nodeInfos.set(peer_id, nodeInfo);
+        recordChange(ChangeRecord.TYPE_NODE, peer_id);
+    }
+
+    @External(readonly=true)
+    public BigInteger get_pending_reward(String peer_id) {
+        NodeInfo nodeInfo = get_node(peer_id);
+        if (nodeInfo == null) {
+            return BigInteger.ZERO;
+        }
+        return nodeInfo.getPendingReward(get_reward_index());
+    }
+
     @External(readonly=true)
     public NodeInfo[] all_nodes() {
         NodeInfo[] allNode = new NodeInfo[nodeInfos.length()];
@@ -507,14 +1457,295 @@ public class PdsPolicy implements Label, Policy, Node {
         return allNode;
     }
 
+    @External(readonly=true)
+    public PageOfNode get_nodes(@Optional long cursor,
+                                @Optional int limit) {
+        return getNodesPage(nodeList, cursor, limit);
+    }
+
+    @External(readonly=true)
+    public PageOfNode get_nodes_by_region(String region,
+                                          @Optional long cursor,
+                                          @Optional int limit) {
+        return getNodesPage(getRegionNodes(region), cursor, limit);
+    }
+
+    private PageOfNode getNodesPage(LinkedSet<String> peerIds, long cursor, int limit) {
+        int total = peerIds.length();
+        int max = Math.min((limit > 0) ? limit : Paging.DEFAULT_PAGE_SIZE, total);
+        NodeInfo[] buffer = new NodeInfo[max];
+        int size = 0;
+        long seq = cursor;
+        while (size < max) {
+            long next = peerIds.next(seq);
+            if (next == 0) {
+                break;
+            }
+            buffer[size++] = nodeInfos.get(peerIds.get(next));
+            seq = next;
+        }
+        NodeInfo[] infos = new NodeInfo[size];
+        System.arraycopy(buffer, 0, infos, 0, size);
+        // the cursor of the next page is 0 if there are no more nodes
+        long nextCursor = (size > 0 && peerIds.next(seq) != 0) ? seq : 0;
+        return new PageOfNode(nextCursor, size, total, infos);
+    }
+
+    @External
+    public void set_node_capacity(String peer_id,
+                                  long max_rps,
+                                  int cores,
+                                  @Optional String region) {
+        NodeInfo nodeInfo = checkPeerId(peer_id);
+        Context.require(max_rps >= 0 && cores >= 0, "invalid capacity");
+        this.nodeCapacities.set(peer_id, new NodeCapacity(max_rps, cores, Context.getBlockHeight()));
+        NodeCapacityUpdated(peer_id, max_rps, cores);
+
+        // region rarely changes, so the node record is rewritten only when it is changed
+        if (region != null && !region.equals(nodeInfo.getRegion())) {
+            setNodeRegion(nodeInfo, region);
+            this.nodeInfos.set(peer_id, nodeInfo);
+            recordChange(ChangeRecord.TYPE_NODE, peer_id);
+            NodeUpdated(peer_id, nodeInfo.getOwner(), nodeInfo.getEndpoint());
+        }
+    }
+
+    @External(readonly=true)
+    public NodeCapacity get_node_capacity(String peer_id) {
+        return this.nodeCapacities.get(peer_id);
+    }
+
+    @External
+    public void set_heartbeat_interval(BigInteger interval) {
+        onlyOwner();
+        Context.require(interval.signum() >= 0, "interval should be greater than or equal to 0");
+        this.heartbeatInterval.set(interval);
+    }
+
+    @External(readonly=true)
+    public BigInteger get_heartbeat_interval() {
+        return this.heartbeatInterval.getOrDefault(BigInteger.ZERO);
+    }
+
+    @External
+    public void heartbeat(String peer_id, @Optional boolean saturated) {
+        checkPeerId(peer_id);
+        long interval = get_heartbeat_interval().longValue();
+        Context.require(interval > 0, "heartbeat is disabled");
+
+        long epoch = Context.getBlockHeight() / interval;
+        this.heartbeats.beat(peer_id, epoch, saturated);
+    }
+
+    private NodeStatus getNodeStatus(NodeInfo nodeInfo, NodeCapacity capacity, NodeHeartbeats.Recent recent) {
+        if (recent == null) {
+            // every node is regarded as alive if heartbeats are disabled
+            return new NodeStatus(nodeInfo, capacity, true, false);
+        }
+        Integer slot = this.heartbeats.getSlot(nodeInfo.getPeer_id());
+        if (slot != null) {
+            HeartbeatInfo heartbeat = recent.find(slot);
+            if (heartbeat != null) {
+                return new NodeStatus(nodeInfo, capacity, true, heartbeat.isSaturated(slot));
+            }
+        }
+        return new NodeStatus(nodeInfo, capacity, false, false);
+    }
+
+    private NodeHeartbeats.Recent getRecentHeartbeats() {
+        long interval = get_heartbeat_interval().longValue();
+        if (interval == 0) {
+            return null;
+        }
+        return this.heartbeats.getRecent(Context.getBlockHeight() / interval);
+    }
+
+    @External(readonly=true)
+    public NodeStatus get_node_status(String peer_id) {
+        NodeInfo nodeInfo = get_node(peer_id);
+        if (nodeInfo == null) {
+            return null;
+        }
+        return getNodeStatus(nodeInfo, get_node_capacity(peer_id), getRecentHeartbeats());
+    }
+
+    @External(readonly=true)
+    public NodeStatus[] all_node_status() {
+        var recent = getRecentHeartbeats();
+        NodeStatus[] allStatus = new NodeStatus[nodeInfos.length()];
+        for (int i = 0; i < allStatus.length; i++) {
+            var key = nodeInfos.getKey(i);
+            allStatus[i] = getNodeStatus(nodeInfos.get(key), get_node_capacity(key), recent);
+        }
+        return allStatus;
+    }
+
+    @External(readonly=true)
+    public NodeInfo[] select_nodes(String policy_id, @Optional int count) {
+        PolicyInfo policyInfo = checkPolicyId(policy_id);
+        int size = (count > 0) ? count : policyInfo.getThreshold().intValue();
+        int total = nodeInfos.length();
+        var recent = getRecentHeartbeats();
+        var selector = new NodeSelector(policy_id, Math.min(size, total));
+        for (int i = 0; i < total; i++) {
+            var nodeInfo = nodeInfos.get(nodeInfos.getKey(i));
+            var status = getNodeStatus(nodeInfo, null, recent);
+            if (!status.getAlive()) {
+                // skip the silent nodes
+                continue;
+            }
+            // add one to the stake so that the nodes without stake can be selected as well
+            var stake = (nodeInfo.getStake() != null) ? nodeInfo.getStake() : BigInteger.ZERO;
+            var weight = stake.add(BigInteger.ONE);
+            if (status.getSaturated()) {
+                weight = weight.divide(SATURATED_WEIGHT_DIVISOR).add(BigInteger.ONE);
+            }
+            selector.offer(nodeInfo, weight);
+        }
+        return selector.getSelected();
+    }
+
+    private void commitLabel(LabelInfo labelInfo) {
+        this.labelTree.update(SparseMerkleTree.keyOf(labelInfo.getLabel_id()), labelInfo.commitment());
+    }
+
+    private void commitGroup(LabelGroup group) {
+        this.groupTree.update(SparseMerkleTree.keyOf(group.getGroup_id()), group.commitment());
+    }
+
+    private void commitPolicy(PolicyInfo policyInfo) {
+        this.policyTree.update(SparseMerkleTree.keyOf(policyInfo.getPolicy_id()), policyInfo.commitment());
+    }
+
+    @External
+    public void commit_records(String[] label_ids, String[] policy_ids) {
+        // the records added before the commitments are committed by their ids, and the committed ones are skipped.
+        // the auth records of the policies added before is_authorized, and the stale ones are written in the same way.
+        for (String labelId : label_ids) {
+            LabelInfo labelInfo = this.labelInfos.get(labelId);
+            if (labelInfo != null && labelTree.getLeaf(SparseMerkleTree.keyOf(labelId)) == null) {
+                commitLabel(labelInfo);
+            }
+        }
+        for (String policyId : policy_ids) {
+            PolicyInfo policyInfo = this.policyInfos.get(policyId);
+            if (policyInfo != null && policyTree.getLeaf(SparseMerkleTree.keyOf(policyId)) == null) {
+                commitPolicy(policyInfo);
+            }
+            if (policyInfo != null && !policyInfo.isScoped()) {
+                AuthRecord auth = this.authRecords.get(policyId);
+                if (auth == null) {
+                    LabelInfo labelInfo = this.labelInfos.get(policyInfo.getLabel_id());
+                    if (labelInfo != null && !labelInfo.isRevoked()) {
+                        writeAuthRecord(policyInfo, labelInfo);
+                    }
+                } else if (isStaleAuthRecord(auth)) {
+                    writeAuthRecord(policyInfo, this.labelInfos.get(auth.getLabel_id()));
+                }
+            }
+        }
+    }
+
+    @External(readonly=true)
+    public Map<String, Object> get_state_root() {
+        byte[] policyRoot = policyTree.getRoot();
+        byte[] labelRoot = labelTree.getRoot();
+        byte[] groupRoot = groupTree.getRoot();
+        return Map.ofEntries(
+                Map.entry("root", SparseMerkleTree.hash(SparseMerkleTree.hash(policyRoot, labelRoot), groupRoot)),
+                Map.entry("policy_root", policyRoot),
+                Map.entry("label_root", labelRoot),
+                Map.entry("group_root", groupRoot),
+                Map.entry("height", Context.getBlockHeight())
+        );
+    }
+
+    @External(readonly=true)
+    public Map<String, Object> get_policy_proof(String policy_id) {
+        PolicyInfo policyInfo = checkPolicyId(policy_id);
+        Context.require(!policyInfo.isScoped(), "scoped policy");
+        LabelInfo labelInfo = this.labelInfos.get(policyInfo.getLabel_id());
+        var policyProof = policyTree.getProof(SparseMerkleTree.keyOf(policy_id));
+        var labelProof = labelTree.getProof(SparseMerkleTree.keyOf(labelInfo.getLabel_id()));
+        // the effective expiration of a label in a label group is min(label_expire_at, group_expire_at)
+        String groupId = labelInfo.getGroup_id();
+        LabelGroup group = (groupId != null) ? this.labelGroups.get(groupId) : null;
+        var groupProof = (group != null)
+                ? groupTree.getProof(SparseMerkleTree.keyOf(groupId))
+                : new SparseMerkleTree.Proof(BigInteger.ZERO, new byte[0][]);
+        return Map.ofEntries(
+                Map.entry("policy_id", policy_id),
+                Map.entry("label_id", labelInfo.getLabel_id()),
+                Map.entry("consumer", (policyInfo.getConsumer() != null) ? policyInfo.getConsumer() : ""),
+                Map.entry("expire_at", policyInfo.getExpire_at()),
+                Map.entry("policy_bitmap", policyProof.getBitmap()),
+                Map.entry("policy_siblings", policyProof.getSiblings()),
+                Map.entry("label_expire_at", labelInfo.getExpire_at()),
+                Map.entry("label_revoked", labelInfo.getRevoked_at()),
+                Map.entry("label_bitmap", labelProof.getBitmap()),
+                Map.entry("label_siblings", labelProof.getSiblings()),
+                Map.entry("group_id", (group != null) ? groupId : ""),
+                Map.entry("group_expire_at", (group != null) ? group.getExpire_at() : BigInteger.ZERO),
+                Map.entry("group_bitmap", groupProof.getBitmap()),
+                Map.entry("group_siblings", groupProof.getSiblings()),
+                Map.entry("policy_root", policyTree.getRoot()),
+                Map.entry("label_root", labelTree.getRoot()),
+                Map.entry("group_root", groupTree.getRoot()),
+                Map.entry("height", Context.getBlockHeight())
+        );
+    }
+
+    private void recordChange(int type, String id) {
+        this.changeFeed.add(new ChangeRecord(type, id, Context.getBlockHeight()));
+    }
+
+    @External(readonly=true)
+    public PageOfChange get_changes_since(long height,
+                                          @Optional long cursor,
+                                          @Optional int limit) {
+        long total = changeFeed.getTotal();
+        long oldest = changeFeed.getOldest();
+        long start;
+        if (cursor > 0) {
+            // the changes following the cursor have been overwritten
+            if (cursor < oldest) {
+                return new PageOfChange(cursor, true, new ChangeRecord[0]);
+            }
+            start = Math.min(cursor, total);
+        } else {
+            // find the first change at or after the height
+            long lo = oldest;
+            long hi = total;
+            while (lo < hi) {
+                long mid = (lo + hi) >>> 1;
+                if (changeFeed.get(mid).getHeight() < height) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            // the overwritten changes may include some at or after the height
+            if (oldest > 0 && lo == oldest) {
+                return new PageOfChange(0, true, new ChangeRecord[0]);
+            }
+            start = lo;
+        }
+        int size = (int) Math.min((limit > 0) ? limit : Paging.DEFAULT_PAGE_SIZE, total - start);
+        ChangeRecord[] changes = new ChangeRecord[size];
+        for (int i = 0; i < size; i++) {
+            changes[i] = changeFeed.get(start + i);
+        }
+        return new PageOfChange(start + size, false, changes);
+    }
+
     @External(readonly=true)
     public BigInteger get_label_count() {
-        return this.labelCount.getOrDefault(BigInteger.ZERO);
+        return this.labelCount.getOrDefault(BigInteger.ZERO).add(this.labelCounter.total());
     }
 
     @External(readonly=true)
     public BigInteger get_policy_count() {
-        return this.policyCount.getOrDefault(BigInteger.ZERO);
+        return this.policyCount.getOrDefault(BigInteger.ZERO).add(this.policyCounter.total());
     }
 
     @EventLog(indexed=3)
@@ -526,6 +1757,20 @@ public class PdsPolicy implements Label, Policy, Node {
     @EventLog(indexed=1)
     public void LabelUpdated(String label_id) {}
 
+    @EventLog(indexed=3)
+    public void LabelAddedV2(String label_id, String owner, String producer, BigInteger expire_at,
+                             BigInteger producer_expire_at, String category, long last_updated) {}
+
+    @EventLog(indexed=1)
+    public void LabelRemovedV2(String label_id, long revoked) {}
+
+    @EventLog(indexed=1)
+    public void LabelUpdatedV2(String label_id, BigInteger expire_at, String producer,
+                               BigInteger producer_expire_at, String category, long last_updated, String group_id) {}
+
+    @EventLog(indexed=1)
+    public void LabelGroupUpdated(String group_id, BigInteger expire_at) {}
+
     @EventLog(indexed=2)
     public void LabelData(String label_id, String data_id) {}
 
@@ -535,6 +1780,16 @@ public class PdsPolicy implements Label, Policy, Node {
     @EventLog(indexed=1)
     public void PolicyUpdated(String policy_id) {}
 
+    @EventLog(indexed=3)
+    public void PolicyAddedV2(String policy_id, String label_id, String consumer, BigInteger threshold,
+                              BigInteger expire_at, int type, long last_updated) {}
+
+    @EventLog(indexed=1)
+    public void PolicyUpdatedV2(String policy_id, BigInteger expire_at, long last_updated) {}
+
+    @EventLog(indexed=1)
+    public void PolicyRemoved(String policy_id) {}
+
     @EventLog(indexed=1)
     public void NodeAdded(String peer_id, Address owner, String endpoint) {}
 
@@ -543,4 +1798,19 @@ public class PdsPolicy implements Label, Policy, Node {
 
     @EventLog(indexed=1)
     public void NodeRemoved(String peer_id) {}
+
+    @EventLog(indexed=1)
+    public void RewardDeposited(Address sender, BigInteger amount) {}
+
+    @EventLog(indexed=2)
+    public void RewardClaimed(String peer_id, Address owner, BigInteger amount) {}
+
+    @EventLog(indexed=2)
+    public void StakeUnbonding(String peer_id, Address owner, BigInteger amount, BigInteger unlock_height) {}
+
+    @EventLog(indexed=1)
+    public void UnbondingClaimed(Address owner, BigInteger amount) {}
+
+    @EventLog(indexed=1)
+    public void NodeCapacityUpdated(String peer_id, long max_rps, int cores) {}
 }
@@ -30,6 +30,116 @@ public interface Policy {
                     String owner_sign,
                     @Optional BigInteger expire_at);
 
+    /**
+     * Adds a new group policy that grants access to a set of consumers.
+     * The consumers are stored once in a per-policy set instead of one policy per consumer.
+     * The policy_id must be Keccak-256("group|" + owner + "|" + nonce)[0:16] in hex, where owner is the DID of the owner,
+     * so it never takes the ID of another policy type or of another owner.
+     *
+     * @param policy_id The unique ID for the policy.
+     * @param label_id The label ID associated with the policy.
+     * @param name The name of the policy.
+     * @param consumers The initial consumers (did#kid) of the policy.
+     * @param threshold The threshold of the policy.
+     * @param nonce The value chosen by the owner to derive the policy_id.
+     * @param owner_sign The owner's signature authorizing the policy creation.
+     * @param expire_at (Optional) The expiration timestamp of the policy in microseconds.
+     *                  If null, the policy expiration follows the label expiration timestamp.
+     *
+     * @implNote Must trigger the PolicyAdded event when the policy is added successfully.
+     * @see #PolicyAdded(String, String, String)
+     */
+    void add_group_policy(String policy_id,
+                          String label_id,
+                          String name,
+                          String[] consumers,
+                          BigInteger threshold,
+                          String nonce,
+                          String owner_sign,
+                          @Optional BigInteger expire_at);
+
+    /**
+     * Adds a new scoped policy that grants the consumer access to a set of labels,
+     * or to every label of the owner in the given category including the labels added later.
+     * Either label_ids or category must be given.
+     * The policy_id must be Keccak-256("scoped|" + owner + "|" + nonce)[0:16] in hex, where owner is the DID of the owner.
+     *
+     * @param policy_id The unique ID for the policy.
+     * @param name The name of the policy.
+     * @param consumer The consumer associated with the policy.
+     * @param threshold The threshold of the policy.
+     * @param expire_at The expiration timestamp of the policy in microseconds.
+     * @param nonce The value chosen by the owner to derive the policy_id.
+     * @param owner_sign The owner's signature authorizing the policy creation.
+     * @param label_ids (Optional) The labels of the owner covered by the policy.
+     * @param category (Optional) The category of the owner's labels covered by the policy.
+     *
+     * @implNote Must trigger the PolicyAdded event when the policy is added successfully.
+     * @see #PolicyAdded(String, String, String)
+     */
+    void add_scoped_policy(String policy_id,
+                           String name,
+                           String consumer,
+                           BigInteger threshold,
+                           BigInteger expire_at,
+                           String nonce,
+                           String owner_sign,
+                           @Optional String[] label_ids,
+                           @Optional String category);
+
+    /**
+     * Removes a scoped policy. The other policies are removed together with their labels.
+     *
+     * @param policy_id The ID of the scoped policy.
+     * @param owner_sign The owner's signature authorizing the removal.
+     *
+     * @implNote Must trigger the PolicyRemoved event when the policy is removed successfully.
+     * @see #PolicyRemoved(String)
+     */
+    void remove_scoped_policy(String policy_id,
+                              String owner_sign);
+
+    /**
+     * Adds consumers to an existing group policy.
+     *
+     * @param policy_id The ID of the group policy.
+     * @param consumers The consumers (did#kid) to be added.
+     * @param owner_sign The owner's signature authorizing the update.
+     *
+     * @implNote Must trigger the PolicyUpdated event when the policy is updated successfully.
+     * @see #PolicyUpdated(String)
+     */
+    void add_policy_consumers(String policy_id,
+                              String[] consumers,
+                              String owner_sign);
+
+    /**
+     * Removes consumers from an existing group policy.
+     *
+     * @param policy_id The ID of the group policy.
+     * @param consumers The consumers (did#kid) to be removed.
+     * @param owner_sign The owner's signature authorizing the update.
+     *
+     * @implNote Must trigger the PolicyUpdated event when the policy is updated successfully.
+     * @see #PolicyUpdated(String)
+     */
+    void remove_policy_consumers(String policy_id,
+                                 String[] consumers,
+                                 String owner_sign);
+
+    /**
+     * Retrieves a page of consumers of the given group policy.
+     *
+     * @param policy_id The ID of the group policy.
+     * @param offset The starting position (can be negative for end-relative indexing).
+     * @param limit (Optional) The maximum number of items to return.
+     *
+     * @return A paginated result containing the list of consumers.
+     */
+    PageOfConsumer get_policy_consumers(String policy_id,
+                                        int offset,
+                                        @Optional int limit);
+
     /**
      * Updates the expiration timestamp of an existing policy.
      *
@@ -56,6 +166,9 @@ public interface Policy {
 
     /**
      * Checks if a policy with the given ID exists and is valid.
+     * The result includes {@code consumer_key}, the compressed public key of the consumer
+     * at the time the policy was added, so that nodes can authenticate the consumer without
+     * looking up the DID document. It is empty for the group policies and the older policies.
      *
      * @param policy_id The ID of the policy to check.
      *
@@ -63,6 +176,49 @@ public interface Policy {
      */
     Map<String, Object> check_policy(String policy_id);
 
+    /**
+     * Checks if a policy with the given ID is valid for the given consumer.
+     * For a group policy, the consumer must be a member of the policy.
+     *
+     * @param policy_id The ID of the policy to check.
+     * @param consumer The consumer (did#kid) to check.
+     *
+     * @return A map containing the policy's details as key-value pairs.
+     */
+    Map<String, Object> check_policy_for(String policy_id, String consumer);
+
+    /**
+     * Returns true if a policy with the given ID is valid for the given consumer.
+     * This is the lightweight form of {@code check_policy_for}, answered from the denormalized
+     * expiration of the policy and its label without loading the policy and the label.
+     * The common case costs two reads, the record of the policy and the version of its label, since the version
+     * is what detects a label update or removal without visiting every policy of the label.
+     * A label in a label group adds the read of the group, and a group policy the read of the membership.
+     * If the label has been updated since the record was written, the label is loaded as well until the record
+     * is rewritten, which happens on the label update itself for a label with a few policies,
+     * on the next update of the policy, or by commit_records.
+     * For a group policy, the consumer must be a member of the policy.
+     * A scoped policy is checked against its own expiration only, use {@code check_policy_on} for a label in its scope.
+     * Unlike {@code check_policy_for}, this never reverts, and returns false for an unknown policy or a removed label.
+     *
+     * @param policy_id The ID of the policy to check.
+     * @param consumer The consumer (did#kid) to check.
+     *
+     * @return true if the policy is not expired and the consumer is allowed by the policy.
+     */
+    boolean is_authorized(String policy_id, String consumer);
+
+    /**
+     * Checks if a policy with the given ID is valid for accessing the given label.
+     * This is required for scoped policies which are not bound to a single label.
+     *
+     * @param policy_id The ID of the policy to check.
+     * @param label_id The ID of the label to be accessed.
+     *
+     * @return A map containing the policy's details as key-value pairs.
+     */
+    Map<String, Object> check_policy_on(String policy_id, String label_id);
+
     /**
      * Retrieves a page of policies associated with the given label ID.
      *
@@ -84,6 +240,46 @@ public interface Policy {
      */
     BigInteger get_policy_count();
 
+    /**
+     * Returns the commitment of the current state of the policies, the labels and the label groups.
+     * The policies are committed by keccak-256(rlp([policy_id, label_id, consumer, expire_at])), the labels by
+     * keccak-256(rlp([label_id, expire_at, revoked])), or keccak-256(rlp([label_id, expire_at, revoked, group_id]))
+     * for the labels in a label group, and the label groups by keccak-256(rlp([group_id, expire_at])), each into
+     * a sparse Merkle tree of depth 64 keyed by the first 8 bytes of keccak-256 of the ID.
+     * A missing label_id or consumer is committed as an empty string.
+     *
+     * @return A map containing the root (keccak-256(keccak-256(policy_root || label_root) || group_root)),
+     *         the roots of the three trees, and the block height.
+     */
+    Map<String, Object> get_state_root();
+
+    /**
+     * Returns the proof of a policy and its label against the current roots, so that a node can verify the policy
+     * locally against a recently checkpointed root instead of calling {@link #check_policy} every time.
+     * The root of each tree is recomputed from the leaf by hashing it with the sibling of each level from the leaf
+     * upward, or with the root of the empty subtree of the level if its bit in the bitmap is not set.
+     * The empty leaf is 32 zero bytes. The scoped policies are not supported.
+     *
+     * @param policy_id The ID of the policy.
+     *
+     * @return A map containing the committed attributes of the policy and the label, the bitmaps and the siblings
+     *         of both proofs, the ID, the expiration and the proof of the label group (an empty group_id
+     *         if the label is not in a group), the roots, and the block height.
+     *         The effective expiration of a label in a group is min(label_expire_at, group_expire_at).
+     */
+    Map<String, Object> get_policy_proof(String policy_id);
+
+    /**
+     * Commits the labels and the policies added before the state commitments,
+     * and writes the records of {@code is_authorized} for the policies added before it,
+     * or rewrites them if their labels have been updated since they were written.
+     * Anyone can call this, and the unknown or already committed IDs are skipped.
+     *
+     * @param label_ids The IDs of the labels to be committed.
+     * @param policy_ids The IDs of the policies to be committed.
+     */
+    void commit_records(String[] label_ids, String[] policy_ids);
+
     /**
      * Notifies when a new policy is added.
      *
@@ -101,4 +297,39 @@ public interface Policy {
      */
     @EventLog(indexed=1)
     void PolicyUpdated(String policy_id);
+
+    /**
+     * Notifies when a new policy is added, with the attributes of the policy.
+     * This is emitted together with {@link #PolicyAdded}, so the indexers can build the policy without querying it.
+     *
+     * @param policy_id The ID of the added policy.
+     * @param label_id The label ID associated with the policy, or an empty string for a scoped policy.
+     * @param consumer The consumer associated with the policy, or an empty string for a group policy.
+     * @param threshold The threshold of the policy.
+     * @param expire_at The expiration timestamp of the policy in microseconds.
+     * @param type The type of the policy.
+     * @param last_updated The block height when the policy was added.
+     */
+    @EventLog(indexed=3)
+    void PolicyAddedV2(String policy_id, String label_id, String consumer, BigInteger threshold,
+                       BigInteger expire_at, int type, long last_updated);
+
+    /**
+     * Notifies when a policy has been updated, with the attributes after the update.
+     * This is emitted together with {@link #PolicyUpdated}.
+     *
+     * @param policy_id The ID of the policy that has been updated.
+     * @param expire_at The expiration timestamp of the policy in microseconds.
+     * @param last_updated The block height when the policy was updated.
+     */
+    @EventLog(indexed=1)
+    void PolicyUpdatedV2(String policy_id, BigInteger expire_at, long last_updated);
+
+    /**
+     * Notifies when a scoped policy has been removed.
+     *
+     * @param policy_id The ID of the policy that has been removed.
+     */
+    @EventLog(indexed=1)
+    void PolicyRemoved(String policy_id);
 }
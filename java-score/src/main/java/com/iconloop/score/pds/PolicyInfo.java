@@ -1,19 +1,44 @@
 package com.iconloop.score.pds;
 
+import com.parametacorp.util.EnumerableSet;
+import com.parametacorp.util.VersionTag;
+import score.ByteArrayObjectWriter;
+import score.Context;
 import score.ObjectReader;
 import score.ObjectWriter;
 
 import java.math.BigInteger;
 
 public class PolicyInfo {
+    // layout version of the stored record
+    // 1: type, owner, category, consumer_ref and owner_ref
+    // 2: consumer_key
+    private static final int VERSION = 2;
+
+    public static final int TYPE_SINGLE = 0;
+    public static final int TYPE_GROUP = 1;
+    public static final int TYPE_LABELS = 2;
+    public static final int TYPE_CATEGORY = 3;
+
     private final String policy_id;
     private final String label_id;
     private final String name;
-    private final String consumer;
+    private String consumer;
     private final BigInteger threshold;
     private BigInteger expire_at;
     private final long created;
     private long last_updated;
+    private final int type;
+    private String owner;
+    private final String category;
+    // the interned ids of the consumer and the owner, which are stored instead of the DIDs if set
+    private long consumer_ref;
+    private long owner_ref;
+    // the compressed public key of the consumer at the time the policy was added
+    private final byte[] consumer_key;
+
+    private EnumerableSet<String> consumers;
+    private EnumerableSet<String> labelIds;
 
     public PolicyInfo(Builder builder) {
         this.policy_id = builder.policyId;
@@ -24,6 +49,18 @@ public class PolicyInfo {
         this.expire_at = builder.expireAt;
         this.created = builder.created;
         this.last_updated = Math.max(builder.lastUpdated, created);
+        this.type = builder.type;
+        this.owner = builder.owner;
+        this.category = builder.category;
+        this.consumer_ref = builder.consumerRef;
+        this.owner_ref = builder.ownerRef;
+        this.consumer_key = builder.consumerKey;
+    }
+
+    // resolves the interned DIDs, so that they are included in the output
+    void resolveDids() {
+        getConsumer();
+        getOwner();
     }
 
     public String getPolicy_id() {
@@ -39,6 +76,9 @@ public class PolicyInfo {
     }
 
     public String getConsumer() {
+        if (consumer == null) {
+            consumer = Dids.resolve(consumer_ref);
+        }
         return consumer;
     }
 
@@ -58,46 +98,118 @@ public class PolicyInfo {
         return last_updated;
     }
 
+    public int getType() {
+        return type;
+    }
+
+    public String getOwner() {
+        if (owner == null) {
+            owner = Dids.resolve(owner_ref);
+        }
+        return owner;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public byte[] getConsumer_key() {
+        return consumer_key;
+    }
+
+    // the leaf of the policy in the state commitment, the empty strings are used for the missing ids
+    public byte[] commitment() {
+        ByteArrayObjectWriter w = Context.newByteArrayObjectWriter("RLPn");
+        w.writeListOfNullable(
+                policy_id,
+                (label_id != null) ? label_id : "",
+                (getConsumer() != null) ? getConsumer() : "",
+                expire_at);
+        return Context.hash("keccak-256", w.toByteArray());
+    }
+
+    public boolean isGroup() {
+        return type == TYPE_GROUP;
+    }
+
+    public boolean isScoped() {
+        return type == TYPE_LABELS || type == TYPE_CATEGORY;
+    }
+
     @Override
     public String toString() {
         return "PolicyInfo{" +
                 "policy_id='" + policy_id + '\'' +
                 ", label_id='" + label_id + '\'' +
                 ", name='" + name + '\'' +
-                ", consumer='" + consumer + '\'' +
+                ", consumer='" + getConsumer() + '\'' +
                 ", threshold=" + threshold +
                 ", expire_at=" + expire_at +
                 ", created=" + created +
                 ", last_updated=" + last_updated +
+                ", type=" + type +
+                ", owner='" + getOwner() + '\'' +
+                ", category='" + category + '\'' +
                 '}';
     }
 
     public static void writeObject(ObjectWriter w, PolicyInfo p) {
-        w.writeListOf(
+        w.writeListOfNullable(
+                VersionTag.tag(VERSION),
                 p.policy_id,
                 p.label_id,
                 p.name,
-                p.consumer,
+                (p.consumer_ref != 0) ? null : p.consumer,
                 p.threshold,
                 p.expire_at,
                 p.created,
-                p.last_updated);
+                p.last_updated,
+                p.type,
+                (p.owner_ref != 0) ? null : p.owner,
+                p.category,
+                p.consumer_ref,
+                p.owner_ref,
+                p.consumer_key);
     }
 
     public static PolicyInfo readObject(ObjectReader r) {
         r.beginList();
-        PolicyInfo p = new Builder()
-                .policyId(r.readString())
-                .labelId(r.readString())
+        VersionTag tag = VersionTag.read(r, VERSION);
+        Builder b = new Builder()
+                .policyId(tag.readString(r))
+                .labelId(r.readNullable(String.class))
                 .name(r.readString())
-                .consumer(r.readString())
+                .consumer(r.readNullable(String.class))
                 .threshold(r.readBigInteger())
                 .expireAt(r.readBigInteger())
                 .created(r.readLong())
-                .lastUpdated(r.readLong())
-                .build();
+                .lastUpdated(r.readLong());
+        int version = tag.getVersion();
+        if (version >= 1) {
+            b.type(r.readInt())
+                    .owner(r.readNullable(String.class))
+                    .category(r.readNullable(String.class))
+                    .consumerRef(r.readLong())
+                    .ownerRef(r.readLong());
+        } else {
+            // the following fields are missing in the records of version 0 written by older contracts
+            if (r.hasNext()) {
+                b.type(r.readInt());
+            }
+            if (r.hasNext()) {
+                b.owner(r.readNullable(String.class))
+                        .category(r.readNullable(String.class));
+            }
+            if (r.hasNext()) {
+                b.consumerRef(r.readLong())
+                        .ownerRef(r.readLong());
+            }
+        }
+        if (version >= 2) {
+            b.consumerKey(r.readNullable(byte[].class));
+        }
         r.end();
-        return p;
+        return b.build();
     }
 
     public void update(Builder attrs) {
@@ -107,6 +219,98 @@ public class PolicyInfo {
         this.last_updated = attrs.lastUpdated;
     }
 
+    private EnumerableSet<String> getConsumers() {
+        if (consumers == null) {
+            consumers = new EnumerableSet<>(policy_id + "_consumers", String.class);
+        }
+        return consumers;
+    }
+
+    private EnumerableSet<String> getLabelIds() {
+        if (labelIds == null) {
+            labelIds = new EnumerableSet<>(policy_id + "_labels", String.class);
+        }
+        return labelIds;
+    }
+
+    public void addLabelId(String labelId) {
+        getLabelIds().add(labelId);
+    }
+
+    public int removeLabelIdAll() {
+        var set = getLabelIds();
+        var size = set.length();
+        for (int i = size - 1; i >= 0; i--) {
+            set.remove(set.at(i));
+        }
+        return size;
+    }
+
+    public boolean covers(LabelInfo labelInfo) {
+        switch (type) {
+            case TYPE_LABELS:
+                return getLabelIds().contains(labelInfo.getLabel_id());
+            case TYPE_CATEGORY:
+                return getOwner().equals(labelInfo.getOwner()) && category.equals(labelInfo.getCategory());
+            default:
+                return label_id.equals(labelInfo.getLabel_id());
+        }
+    }
+
+    public boolean hasConsumer(String consumer) {
+        if (isGroup()) {
+            return getConsumers().contains(consumer);
+        }
+        return getConsumer().equals(consumer);
+    }
+
+    // checks the membership of a group policy without loading the policy
+    public static boolean isGroupConsumer(String policyId, String consumer) {
+        return new EnumerableSet<>(policyId + "_consumers", String.class).contains(consumer);
+    }
+
+    public boolean addConsumer(String consumer) {
+        var set = getConsumers();
+        if (set.contains(consumer)) {
+            return false;
+        }
+        set.add(consumer);
+        return true;
+    }
+
+    public boolean removeConsumer(String consumer) {
+        var set = getConsumers();
+        if (!set.contains(consumer)) {
+            return false;
+        }
+        set.remove(consumer);
+        return true;
+    }
+
+    public int removeConsumerAll() {
+        var set = getConsumers();
+        var size = set.length();
+        for (int i = size - 1; i >= 0; i--) {
+            set.remove(set.at(i));
+        }
+        return size;
+    }
+
+    public PageOfConsumer getConsumersPage(int offset, int limit) {
+        var set = getConsumers();
+        int total = set.length();
+        if (total == 0) {
+            return new PageOfConsumer(0, 0, 0, new String[0]);
+        }
+        int start = Paging.getStart(offset, total);
+        int size = Paging.getSize(start, limit, total);
+        String[] ids = new String[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = set.at(start + i);
+        }
+        return new PageOfConsumer(start, size, total, ids);
+    }
+
     public static class Builder {
         private String policyId;
         private String labelId;
@@ -116,6 +320,12 @@ public class PolicyInfo {
         private BigInteger expireAt;
         private long created;
         private long lastUpdated;
+        private int type;
+        private String owner;
+        private String category;
+        private long consumerRef;
+        private long ownerRef;
+        private byte[] consumerKey;
 
         public Builder policyId(String policyId) {
             this.policyId = policyId;
@@ -157,6 +367,36 @@ public class PolicyInfo {
             return this;
         }
 
+        public Builder type(int type) {
+            this.type = type;
+            return this;
+        }
+
+        public Builder owner(String owner) {
+            this.owner = owner;
+            return this;
+        }
+
+        public Builder category(String category) {
+            this.category = category;
+            return this;
+        }
+
+        public Builder consumerRef(long consumerRef) {
+            this.consumerRef = consumerRef;
+            return this;
+        }
+
+        public Builder ownerRef(long ownerRef) {
+            this.ownerRef = ownerRef;
+            return this;
+        }
+
+        public Builder consumerKey(byte[] consumerKey) {
+            this.consumerKey = consumerKey;
+            return this;
+        }
+
         public PolicyInfo build() {
             return new PolicyInfo(this);
         }
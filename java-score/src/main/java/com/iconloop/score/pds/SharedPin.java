@@ -0,0 +1,71 @@
+package com.iconloop.score.pds;
+
+import score.ObjectReader;
+import score.ObjectWriter;
+
+import java.math.BigInteger;
+
+/**
+ * SharedPin is the reference count of a data pinned once for all labels of an owner.
+ * The data is pinned in its own group of bfs_score, whose expiration is only extended by the referencing labels,
+ * and it is unpinned when the last reference is released after the referencing labels are removed.
+ */
+public class SharedPin {
+    private int refs;
+    private BigInteger expire_at;
+
+    public SharedPin(int refs, BigInteger expireAt) {
+        this.refs = refs;
+        this.expire_at = expireAt;
+    }
+
+    public int getRefs() {
+        return refs;
+    }
+
+    public BigInteger getExpire_at() {
+        return expire_at;
+    }
+
+    // returns true if the expiration is extended
+    public boolean addRef(BigInteger expireAt) {
+        refs++;
+        return extend(expireAt);
+    }
+
+    // returns true if the expiration is extended
+    public boolean extend(BigInteger expireAt) {
+        if (expireAt.compareTo(expire_at) <= 0) {
+            return false;
+        }
+        expire_at = expireAt;
+        return true;
+    }
+
+    // returns true if the last reference is released
+    public boolean release() {
+        refs--;
+        return refs == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "SharedPin{" +
+                "refs=" + refs +
+                ", expire_at=" + expire_at +
+                '}';
+    }
+
+    public static void writeObject(ObjectWriter w, SharedPin p) {
+        w.writeListOf(p.refs, p.expire_at);
+    }
+
+    public static SharedPin readObject(ObjectReader r) {
+        r.beginList();
+        SharedPin p = new SharedPin(
+                r.readInt(),
+                r.readBigInteger());
+        r.end();
+        return p;
+    }
+}
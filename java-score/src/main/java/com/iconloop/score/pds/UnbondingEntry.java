@@ -0,0 +1,38 @@
+package com.iconloop.score.pds;
+
+import score.ObjectReader;
+import score.ObjectWriter;
+
+import java.math.BigInteger;
+
+public class UnbondingEntry {
+    private final long unlock_height;
+    // sum of the amounts of this entry and all the previous entries
+    private final BigInteger cumulative;
+
+    public UnbondingEntry(long unlockHeight, BigInteger cumulative) {
+        this.unlock_height = unlockHeight;
+        this.cumulative = cumulative;
+    }
+
+    public long getUnlock_height() {
+        return unlock_height;
+    }
+
+    public BigInteger getCumulative() {
+        return cumulative;
+    }
+
+    public static void writeObject(ObjectWriter w, UnbondingEntry e) {
+        w.writeListOf(e.unlock_height, e.cumulative);
+    }
+
+    public static UnbondingEntry readObject(ObjectReader r) {
+        r.beginList();
+        UnbondingEntry e = new UnbondingEntry(
+                r.readLong(),
+                r.readBigInteger());
+        r.end();
+        return e;
+    }
+}
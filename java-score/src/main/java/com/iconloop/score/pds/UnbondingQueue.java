@@ -0,0 +1,81 @@
+package com.iconloop.score.pds;
+
+import score.Address;
+import score.ArrayDB;
+import score.Context;
+import score.VarDB;
+
+import java.math.BigInteger;
+
+/**
+ * UnbondingQueue keeps the stake withdrawals of an owner until their lock period ends.
+ *   - Entries hold the cumulative amount and are appended in the order of their unlock heights.
+ *     The queue is FIFO by design: an entry never unlocks before the entries queued earlier,
+ *     so a shortened lock period applies to a new withdrawal only once the earlier ones have unlocked.
+ *     Inserting it in the middle instead would rewrite the cumulative amounts of all later entries.
+ *   - The claimable amount is found by a binary search for the last unlocked entry,
+ *     so claiming costs a single write regardless of the number of entries.
+ */
+public class UnbondingQueue {
+    private final ArrayDB<UnbondingEntry> entries;
+    private final VarDB<BigInteger> claimed;
+
+    public UnbondingQueue(Address owner) {
+        String id = "unbonding_" + owner;
+        this.entries = Context.newArrayDB(id + "_entries", UnbondingEntry.class);
+        this.claimed = Context.newVarDB(id + "_claimed", BigInteger.class);
+    }
+
+    private BigInteger getClaimed() {
+        return claimed.getOrDefault(BigInteger.ZERO);
+    }
+
+    private BigInteger getTotal() {
+        int size = entries.size();
+        return (size > 0) ? entries.get(size - 1).getCumulative() : BigInteger.ZERO;
+    }
+
+    private BigInteger getUnlocked(long height) {
+        // binary search for the last entry unlocked at the given height
+        int lo = 0, hi = entries.size();
+        BigInteger unlocked = BigInteger.ZERO;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            UnbondingEntry entry = entries.get(mid);
+            if (entry.getUnlock_height() <= height) {
+                unlocked = entry.getCumulative();
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return unlocked;
+    }
+
+    public long enqueue(BigInteger amount, long unlockHeight) {
+        int size = entries.size();
+        if (size > 0) {
+            // the withdrawals unlock in FIFO order even if the lock period has been shortened
+            unlockHeight = Math.max(unlockHeight, entries.get(size - 1).getUnlock_height());
+        }
+        entries.add(new UnbondingEntry(unlockHeight, getTotal().add(amount)));
+        return unlockHeight;
+    }
+
+    public BigInteger getLocked(long height) {
+        return getTotal().subtract(getUnlocked(height));
+    }
+
+    public BigInteger getClaimable(long height) {
+        return getUnlocked(height).subtract(getClaimed());
+    }
+
+    public BigInteger claim(long height) {
+        BigInteger unlocked = getUnlocked(height);
+        BigInteger amount = unlocked.subtract(getClaimed());
+        if (amount.signum() > 0) {
+            claimed.set(unlocked);
+        }
+        return amount;
+    }
+}
@@ -1,5 +1,6 @@
 package com.iconloop.score.pds;
 
+import com.eclipsesource.json.Json;
 import com.iconloop.score.pds.util.Jwt;
 import com.iconloop.score.test.Account;
 import com.iconloop.score.test.Score;
@@ -7,6 +8,14 @@ import com.iconloop.score.test.ServiceManager;
 import com.iconloop.score.test.TestBase;
 import com.parametacorp.jwt.Payload;
 import com.parametacorp.util.Converter;
+import com.parametacorp.util.EnumerableMap;
+import com.parametacorp.util.GenerationalMap;
+import com.parametacorp.util.InternTable;
+import com.parametacorp.util.LinkedSet;
+import com.parametacorp.util.RingBuffer;
+import com.parametacorp.util.ShardedCounter;
+import com.parametacorp.util.SparseMerkleTree;
+import com.parametacorp.util.VersionTag;
 import foundation.icon.did.core.Algorithm;
 import foundation.icon.did.core.AlgorithmProvider;
 import foundation.icon.did.core.DidKeyHolder;
@@ -15,6 +24,9 @@ import foundation.icon.icx.crypto.IconKeys;
 import foundation.icon.icx.data.Bytes;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import score.Context;
+import score.DictDB;
 import score.UserRevertedException;
 import score.impl.Crypto;
 
@@ -93,6 +105,12 @@ public class PolicyTest extends TestBase {
         return Converter.bytesToHex(Crypto.hash("keccak-256", msgBytes), 0, 16);
     }
 
+    private static String createPolicyId(String type, DidKeyHolder owner, String nonce) {
+        // Keccak-256(type + "|" + owner + "|" + nonce)[0:16]
+        var msgBytes = (type + "|" + owner.getDid() + "|" + nonce).getBytes();
+        return Converter.bytesToHex(Crypto.hash("keccak-256", msgBytes), 0, 16);
+    }
+
     public static class ParamsBuilder {
         private final DidKeyHolder signer;
         private final String method;
@@ -101,12 +119,18 @@ public class PolicyTest extends TestBase {
         private long baseHeight;
         private DidKeyHolder producer;
         private DidKeyHolder consumer;
+        private String[] consumers;
+        private String[] labelIds;
         private String dataId;
         private String category;
         private BigInteger expireAt;
         private BigInteger producerExpireAt;
         private String dataOpt;
         private BigInteger threshold;
+        private BigInteger quota;
+        private int chunkCount;
+        private String groupId;
+        private String nonce;
 
         public ParamsBuilder(DidKeyHolder signer, String method) {
             this.signer = signer;
@@ -138,6 +162,19 @@ public class PolicyTest extends TestBase {
             return this;
         }
 
+        public ParamsBuilder consumers(DidKeyHolder... consumers) {
+            this.consumers = new String[consumers.length];
+            for (int i = 0; i < consumers.length; i++) {
+                this.consumers[i] = consumers[i].getKid();
+            }
+            return this;
+        }
+
+        public ParamsBuilder labelIds(String... labelIds) {
+            this.labelIds = labelIds;
+            return this;
+        }
+
         public ParamsBuilder dataId(String dataId) {
             this.dataId = dataId;
             return this;
@@ -168,6 +205,26 @@ public class PolicyTest extends TestBase {
             return this;
         }
 
+        public ParamsBuilder quota(BigInteger quota) {
+            this.quota = quota;
+            return this;
+        }
+
+        public ParamsBuilder chunkCount(int chunkCount) {
+            this.chunkCount = chunkCount;
+            return this;
+        }
+
+        public ParamsBuilder groupId(String groupId) {
+            this.groupId = groupId;
+            return this;
+        }
+
+        public ParamsBuilder nonce(String nonce) {
+            this.nonce = nonce;
+            return this;
+        }
+
         public Object[] build() throws AlgorithmException {
             var pb = new Payload.Builder(method);
             if (labelId != null) {
@@ -179,6 +236,22 @@ public class PolicyTest extends TestBase {
             if (policyId != null) {
                 pb.policyId(policyId);
             }
+            if (consumers != null) {
+                pb.consumers(consumers);
+            }
+            if (quota != null) {
+                pb.quota(quota);
+            }
+            if (groupId != null) {
+                pb.groupId(groupId);
+            }
+            if (chunkCount > 0) {
+                pb.chunkCount(chunkCount);
+            }
+            if (method.equals("add_scoped_policy")) {
+                // the scope is signed only when the scoped policy is added
+                pb.labelIds(labelIds).category(category);
+            }
             if (baseHeight > 0) {
                 pb.baseHeight(baseHeight);
             }
@@ -213,6 +286,8 @@ public class PolicyTest extends TestBase {
                 case "add_data":
                     return new Object[] {
                             labelId, dataId, "name_" + dataId, BigInteger.valueOf(1000), signature,
+                            // Optional
+                            chunkCount
                     };
                 case "add_policy":
                     return new Object[] {
@@ -226,6 +301,44 @@ public class PolicyTest extends TestBase {
                     return new Object[] {
                             policyId, expireAt, signature,
                     };
+                case "add_group_policy":
+                    return new Object[] {
+                            policyId, labelId, "name_" + policyId, consumers,
+                            (threshold != null) ? threshold : BigInteger.ONE, nonce, signature,
+                            // Optional
+                            BigInteger.ZERO
+                    };
+                case "add_scoped_policy":
+                    return new Object[] {
+                            policyId, "name_" + policyId,
+                            (consumer != null) ? consumer.getKid() : null,
+                            (threshold != null) ? threshold : BigInteger.ONE,
+                            (expireAt != null) ? expireAt : timestamp.add(ONE_HOUR), nonce, signature,
+                            // Optional
+                            labelIds, category
+                    };
+                case "remove_scoped_policy":
+                    return new Object[] {
+                            policyId, signature,
+                    };
+                case "add_policy_consumers":
+                case "remove_policy_consumers":
+                    return new Object[] {
+                            policyId, consumers, signature,
+                    };
+                case "set_owner_quota":
+                    return new Object[] {
+                            quota, signature,
+                    };
+                case "add_label_group":
+                case "update_group_expiry":
+                    return new Object[] {
+                            groupId, expireAt, signature,
+                    };
+                case "set_label_group":
+                    return new Object[] {
+                            labelId, groupId, signature,
+                    };
             }
             throw new IllegalArgumentException("Invalid method: " + method);
         }
@@ -241,6 +354,22 @@ public class PolicyTest extends TestBase {
         policyScore.invoke(owner, "remove_label", new ParamsBuilder(keyHolder, "remove_label").labelId(labelId).build());
     }
 
+    // runs the code in a transaction of the policy score, so the storage structures can be tested directly
+    private void runInScore(Runnable code) {
+        var instance = (PdsPolicy) policyScore.getInstance();
+        var spy = Mockito.spy(instance);
+        Mockito.doAnswer(invocation -> {
+            code.run();
+            return null;
+        }).when(spy).register_labels(Mockito.any());
+        policyScore.setInstance(spy);
+        try {
+            policyScore.invoke(owner, "register_labels", (Object) new String[0]);
+        } finally {
+            policyScore.setInstance(instance);
+        }
+    }
+
     @Test
     void labelTest() throws Exception {
         // add label
@@ -249,9 +378,17 @@ public class PolicyTest extends TestBase {
         System.out.println(label);
         assertEquals(BigInteger.ONE, policyScore.call(BigInteger.class, "get_label_count"));
 
+        // the child collections of a new label are prefixed with "L" + the handle in base 36
+        assertNotEquals(0L, label.handle());
+        assertEquals("L" + Long.toString(label.handle(), 36), label.getStoragePrefix());
+
         // Negative: try to add with the same labelId
         assertThrows(UserRevertedException.class, () ->
                 policyScore.invoke(owner, "add_label", new ParamsBuilder(alice, "add_label").labelId(labelId).build()));
+        // Negative: the separator of the generation ids is not allowed
+        assertThrows(UserRevertedException.class, () ->
+                policyScore.invoke(owner, "add_label",
+                        new ParamsBuilder(alice, "add_label").labelId(labelId + "\0g1").build()));
 
         // update label
         policyScore.invoke(owner, "update_label",
@@ -262,6 +399,32 @@ public class PolicyTest extends TestBase {
         assertEquals("newCategory", label.getCategory());
         System.out.println(label);
 
+        // the update is recorded in the change feed
+        var changes = (PageOfChange) policyScore.call("get_changes_since", label.getLast_updated(), 0L, 0);
+        assertFalse(changes.getResync());
+        assertEquals(1, changes.getChanges().length);
+        assertEquals(ChangeRecord.TYPE_LABEL, changes.getChanges()[0].getType());
+        assertEquals(labelId, changes.getChanges()[0].getId());
+        var next = (PageOfChange) policyScore.call("get_changes_since", 0L, changes.getCursor(), 0);
+        assertEquals(0, next.getChanges().length);
+        assertEquals(changes.getCursor(), next.getCursor());
+
+        // the label is included in the export
+        LabelSummary exported = null;
+        long cursor = 0;
+        do {
+            var labelPage = (PageOfLabel) policyScore.call("export_labels", cursor, 2);
+            for (var summary : labelPage.getIds()) {
+                if (labelId.equals(summary.getLabel().getLabel_id())) {
+                    exported = summary;
+                }
+            }
+            cursor = labelPage.getCursor();
+        } while (cursor != 0);
+        assertNotNull(exported);
+        assertEquals("newCategory", exported.getLabel().getCategory());
+        assertEquals(0, exported.getPolicy_count());
+
         // Negative: try to update with an invalid baseHeight
         final long invalidBaseHeight = label.getLast_updated() - 1;
         assertThrows(UserRevertedException.class, () -> policyScore.invoke(owner, "update_label",
@@ -276,6 +439,22 @@ public class PolicyTest extends TestBase {
         System.out.println(label);
         assertTrue(label.isRevoked());
         assertEquals(BigInteger.ZERO, policyScore.call(BigInteger.class, "get_label_count"));
+
+        // compact the revoked label after the grace period
+        policyScore.invoke(owner, "set_compaction_grace_period", BigInteger.valueOf(10));
+        policyScore.invoke(owner, "compact_labels", (Object) new String[] {labelId});
+        assertFalse(((LabelInfo) policyScore.call("get_label", labelId)).isCompacted());
+        sm.getBlock().increase(10);
+        policyScore.invoke(owner, "compact_labels", (Object) new String[] {labelId});
+        label = (LabelInfo) policyScore.call("get_label", labelId);
+        System.out.println(label);
+        assertTrue(label.isCompacted());
+        assertEquals(alice.getDid(), label.getOwner());
+        assertNull(label.getPublic_key());
+
+        // Negative: the tombstone still prevents the labelId from being reused
+        assertThrows(UserRevertedException.class, () ->
+                policyScore.invoke(owner, "add_label", new ParamsBuilder(alice, "add_label").labelId(labelId).build()));
     }
 
     @Test
@@ -299,29 +478,133 @@ public class PolicyTest extends TestBase {
         var data2 = page.getIds()[0];
         assertEquals(dataId, data2.getData_id());
 
+        // the new labels already use the indexed storage, so the migration does nothing
+        policyScore.invoke(owner, "migrate_label_data", labelId);
+        assertEquals(dataId, ((DataInfo) policyScore.call("get_data", labelId, dataId)).getData_id());
+
         // check pinInfo in bfs_score
-        var pinInfo = (String) bfsScore.call("get_pin", policyScore.getAddress().toString(), dataId);
+        var scoreAddress = policyScore.getAddress().toString();
+        var pinInfo = (String) bfsScore.call("get_pin", scoreAddress, dataId);
         assertNotNull(pinInfo);
-        assertEquals(BigInteger.ZERO, bfsScore.call("get_group", policyScore.getAddress().toString(), labelId));
+        assertEquals(BigInteger.ZERO, bfsScore.call("get_group", scoreAddress, labelId));
         System.out.println(pinInfo);
+        // the data is pinned once in the group of the shared pin
+        var group = Json.parse(pinInfo).asObject().getString("group", null);
+        var pin = (SharedPin) policyScore.call("get_shared_pin", alice.getDid(), dataId);
+        assertEquals(1, pin.getRefs());
+        assertEquals(label.getExpire_at(), pin.getExpire_at());
 
-        // updating label's expire_at should affect the pinInfo in bfs_score
+        // updating label's expire_at should affect the group of the label, but the shared pin is never shortened
         var newExpireAt = label.getExpire_at().subtract(ONE_SECOND);
         policyScore.invoke(owner, "update_label",
                 new ParamsBuilder(alice, "update_label").labelId(labelId)
                         .baseHeight(label.getLast_updated())
                         .expireAt(newExpireAt)
                         .build());
-        var pinInfo2 = (String) bfsScore.call("get_pin", policyScore.getAddress().toString(), dataId);
+        var pinInfo2 = (String) bfsScore.call("get_pin", scoreAddress, dataId);
         assertNotNull(pinInfo2);
-        assertEquals(newExpireAt, bfsScore.call("get_group", policyScore.getAddress().toString(), labelId));
+        assertEquals(newExpireAt, bfsScore.call("get_group", scoreAddress, labelId));
+        assertEquals(label.getExpire_at(), bfsScore.call("get_group", scoreAddress, group));
         System.out.println(pinInfo2);
 
+        // the shared pin is extended by refresh_shared_pins after the label is extended
+        label = (LabelInfo) policyScore.call("get_label", labelId);
+        var extendedExpireAt = label.getExpire_at().add(ONE_HOUR);
+        policyScore.invoke(owner, "update_label",
+                new ParamsBuilder(alice, "update_label").labelId(labelId)
+                        .baseHeight(label.getLast_updated())
+                        .expireAt(extendedExpireAt)
+                        .build());
+        assertEquals(label.getExpire_at().add(ONE_SECOND), bfsScore.call("get_group", scoreAddress, group));
+        policyScore.invoke(owner, "refresh_shared_pins", labelId, new String[]{dataId, "unknown"});
+        assertEquals(extendedExpireAt, bfsScore.call("get_group", scoreAddress, group));
+
+        // another label of the same owner references the data without pinning it again
+        String labelId2 = addRandomLabel(alice);
+        var label2 = (LabelInfo) policyScore.call("get_label", labelId2);
+        policyScore.invoke(owner, "add_data", new ParamsBuilder(alice, "add_data").labelId(labelId2).dataId(dataId).build());
+        pin = (SharedPin) policyScore.call("get_shared_pin", alice.getDid(), dataId);
+        assertEquals(2, pin.getRefs());
+        var pinExpireAt = extendedExpireAt.max(label2.getExpire_at());
+        assertEquals(pinExpireAt, pin.getExpire_at());
+        assertEquals(pinExpireAt, bfsScore.call("get_group", scoreAddress, group));
+
+        // removing a label releases its reference lazily as its data entries are reclaimed
+        removeLabel(alice, labelId2);
+        pin = (SharedPin) policyScore.call("get_shared_pin", alice.getDid(), dataId);
+        assertEquals(2, pin.getRefs());
+        assertThrows(UserRevertedException.class, () ->
+                policyScore.invoke(owner, "release_shared_pins", labelId));
+        policyScore.invoke(owner, "release_shared_pins", labelId2);
+        pin = (SharedPin) policyScore.call("get_shared_pin", alice.getDid(), dataId);
+        assertEquals(1, pin.getRefs());
+        assertEquals(pinExpireAt, bfsScore.call("get_group", scoreAddress, group));
+        // releasing again does nothing
+        policyScore.invoke(owner, "release_shared_pins", labelId2);
+        assertEquals(1, ((SharedPin) policyScore.call("get_shared_pin", alice.getDid(), dataId)).getRefs());
+
         // cleanup: remove label
         removeLabel(alice, labelId);
+        assertNotNull(policyScore.call("get_shared_pin", alice.getDid(), dataId));
+        policyScore.invoke(owner, "release_shared_pins", labelId);
+        assertNull(policyScore.call("get_shared_pin", alice.getDid(), dataId));
 
         // group expires should be "1" after the label is revoked
-        assertEquals(BigInteger.ONE, bfsScore.call("get_group", policyScore.getAddress().toString(), labelId));
+        assertEquals(BigInteger.ONE, bfsScore.call("get_group", scoreAddress, labelId));
+        assertEquals(BigInteger.ONE, bfsScore.call("get_group", scoreAddress, group));
+    }
+
+    @Test
+    void didInternTest() throws Exception {
+        // two labels of the same owner and producer share the interned DIDs
+        String labelId = addRandomLabel(alice);
+        String labelId2 = addRandomLabel(alice);
+        var timestamp = BigInteger.valueOf(sm.getBlock().getTimestamp());
+        for (var id : new String[] {labelId, labelId2}) {
+            var label = (LabelInfo) policyScore.call("get_label", id);
+            policyScore.invoke(owner, "update_label",
+                    new ParamsBuilder(alice, "update_label").labelId(id)
+                            .baseHeight(label.getLast_updated())
+                            .producerExpireAt(timestamp.add(ONE_HOUR))
+                            .producer(bob).build());
+            label = (LabelInfo) policyScore.call("get_label", id);
+            assertEquals(alice.getDid(), label.getOwner());
+            assertEquals(bob.getDid(), label.getProducer());
+        }
+
+        // the producer check resolves the interned producer
+        DidKeyHolder carol = createDidAndKeyHolder("key3");
+        policyScore.invoke(owner, "add_data",
+                new ParamsBuilder(bob, "add_data").labelId(labelId2).dataId("data_" + labelId2).build());
+        assertThrows(UserRevertedException.class, () ->
+                policyScore.invoke(owner, "add_data",
+                        new ParamsBuilder(carol, "add_data").labelId(labelId2).dataId("data_" + labelId2).build()));
+
+        // changing the producer of a label doesn't affect the other label
+        var label = (LabelInfo) policyScore.call("get_label", labelId);
+        policyScore.invoke(owner, "update_label",
+                new ParamsBuilder(alice, "update_label").labelId(labelId)
+                        .baseHeight(label.getLast_updated())
+                        .producerExpireAt(timestamp.add(ONE_HOUR))
+                        .producer(carol).build());
+        assertEquals(carol.getDid(), ((LabelInfo) policyScore.call("get_label", labelId)).getProducer());
+        assertEquals(bob.getDid(), ((LabelInfo) policyScore.call("get_label", labelId2)).getProducer());
+
+        // the interned consumer is resolved in the outputs
+        var policyId = createPolicyId(labelId, bob);
+        policyScore.invoke(owner, "add_policy",
+                new ParamsBuilder(alice, "add_policy").labelId(labelId)
+                        .policyId(policyId).consumer(bob).build());
+        var policy = (PolicyInfo) policyScore.call("get_policy", policyId);
+        assertEquals(bob.getKid(), policy.getConsumer());
+        var page = (PageOfPolicy) policyScore.call("get_policy_list", labelId, 0, 0);
+        assertEquals(1, page.getIds().length);
+        assertEquals(bob.getKid(), page.getIds()[0].getConsumer());
+        assertTrue((Boolean) ((Map) policyScore.call("check_policy", policyId)).get("checked"));
+
+        // cleanup: remove labels
+        removeLabel(alice, labelId);
+        removeLabel(alice, labelId2);
     }
 
     @Test
@@ -363,17 +646,53 @@ public class PolicyTest extends TestBase {
             policyScore.invoke(owner, "add_data", new ParamsBuilder(carol, "add_data").labelId(labelId).dataId(dataId).build());
         }
 
+        var labelUsage = (Map) policyScore.call("get_label_usage", labelId);
+        assertEquals(31, labelUsage.get("data_count"));
+        assertEquals(BigInteger.valueOf(31000), labelUsage.get("data_bytes"));
+
+        // the owner quota is checked against the total bytes of all labels of the owner
+        var usage = (OwnerUsage) policyScore.call("get_owner_usage", alice.getDid());
+        policyScore.invoke(owner, "set_owner_quota", new ParamsBuilder(alice, "set_owner_quota")
+                .quota(usage.getData_bytes().add(BigInteger.valueOf(1000))).build());
+        policyScore.invoke(owner, "add_data", new ParamsBuilder(carol, "add_data").labelId(labelId).dataId("data_quota").build());
+        assertThrows(UserRevertedException.class, () ->
+                policyScore.invoke(owner, "add_data", new ParamsBuilder(carol, "add_data")
+                        .labelId(labelId).dataId("data_over_quota").build()));
+        usage = (OwnerUsage) policyScore.call("get_owner_usage", alice.getDid());
+        assertEquals(usage.getQuota(), usage.getData_bytes());
+        policyScore.invoke(owner, "set_owner_quota", new ParamsBuilder(alice, "set_owner_quota")
+                .quota(BigInteger.ZERO).baseHeight(usage.getLast_updated()).build());
+
         var page = (PageOfData) policyScore.call("get_data_list", labelId, 0, 0);
         assertEquals(0, page.getOffset());
         assertEquals(25, page.getSize());
-        assertEquals(31, page.getTotal());
+        assertEquals(32, page.getTotal());
         assertEquals(25, page.getIds().length);
 
-        var page2 = (PageOfData) policyScore.call("get_data_list", labelId, -11, 20);
+        var page2 = (PageOfData) policyScore.call("get_data_list", labelId, -12, 20);
         assertEquals(20, page2.getOffset());
-        assertEquals(11, page2.getSize());
-        assertEquals(31, page2.getTotal());
-        assertEquals(11, page2.getIds().length);
+        assertEquals(12, page2.getSize());
+        assertEquals(32, page2.getTotal());
+        assertEquals(12, page2.getIds().length);
+
+        // Negative: the chunk_count must be the signed one
+        var mismatched = new ParamsBuilder(carol, "add_data").labelId(labelId)
+                .dataId("data_manifest").chunkCount(4000).build();
+        mismatched[5] = 4001;
+        assertThrows(UserRevertedException.class, () -> policyScore.invoke(owner, "add_data", mismatched));
+        var unsigned = new ParamsBuilder(carol, "add_data").labelId(labelId)
+                .dataId("data_manifest").build();
+        unsigned[5] = 4000;
+        assertThrows(UserRevertedException.class, () -> policyScore.invoke(owner, "add_data", unsigned));
+
+        // a manifest is added as a single entry
+        policyScore.invoke(owner, "add_data", new ParamsBuilder(carol, "add_data").labelId(labelId)
+                .dataId("data_manifest").chunkCount(4000).build());
+        var manifest = (DataInfo) policyScore.call("get_data", labelId, "data_manifest");
+        assertTrue(manifest.isManifest());
+        assertEquals(4000, manifest.getChunk_count());
+        assertFalse(((DataInfo) policyScore.call("get_data", labelId, cid)).isManifest());
+        assertEquals(33, ((PageOfData) policyScore.call("get_data_list", labelId, 0, 0)).getTotal());
 
         // Negative: add_data should fail if producer_expire_at has expired
         sm.getBlock().increase(30);
@@ -382,7 +701,12 @@ public class PolicyTest extends TestBase {
                         .labelId(labelId).dataId("producer_has_expired").build()));
 
         // cleanup: remove label
+        var usageBefore = (OwnerUsage) policyScore.call("get_owner_usage", alice.getDid());
         removeLabel(alice, labelId);
+        usage = (OwnerUsage) policyScore.call("get_owner_usage", alice.getDid());
+        assertEquals(usageBefore.getData_bytes().subtract(BigInteger.valueOf(33000)), usage.getData_bytes());
+        // only the counted data of the label are subtracted
+        assertEquals(usageBefore.getData_count() - 33, usage.getData_count());
     }
 
     @Test
@@ -410,6 +734,7 @@ public class PolicyTest extends TestBase {
         assertEquals(bob.getKid(), policy.getConsumer());
         assertEquals(label.getExpire_at(), policy.getExpire_at());
         assertEquals(threshold, policy.getThreshold());
+        assertEquals(33, policy.getConsumer_key().length);
         assertEquals(BigInteger.ONE, policyScore.call(BigInteger.class, "get_policy_count"));
 
         // ensure check_policy returns true
@@ -417,6 +742,82 @@ public class PolicyTest extends TestBase {
         System.out.println(checkPolicy);
         assertTrue((Boolean) checkPolicy.get("checked"));
         assertEquals(bob.getKid(), checkPolicy.get("consumer"));
+        assertArrayEquals(policy.getConsumer_key(), (byte[]) checkPolicy.get("consumer_key"));
+        assertEquals(Boolean.TRUE, policyScore.call("is_authorized", policyId, bob.getKid()));
+        assertEquals(Boolean.FALSE, policyScore.call("is_authorized", policyId, alice.getKid()));
+
+        // verify the policy and its label against the state root
+        var stateRoot = (Map) policyScore.call("get_state_root");
+        var proof = (Map) policyScore.call("get_policy_proof", policyId);
+        var policyProof = new SparseMerkleTree.Proof(
+                (BigInteger) proof.get("policy_bitmap"), (byte[][]) proof.get("policy_siblings"));
+        assertArrayEquals((byte[]) stateRoot.get("policy_root"),
+                SparseMerkleTree.computeRoot(SparseMerkleTree.keyOf(policyId), policy.commitment(), policyProof));
+        var labelProof = new SparseMerkleTree.Proof(
+                (BigInteger) proof.get("label_bitmap"), (byte[][]) proof.get("label_siblings"));
+        assertArrayEquals((byte[]) stateRoot.get("label_root"),
+                SparseMerkleTree.computeRoot(SparseMerkleTree.keyOf(labelId), label.commitment(), labelProof));
+
+        // the label inherits the expiration of its label group
+        String groupId = "group_" + rand.nextInt(10000);
+        policyScore.invoke(owner, "add_label_group",
+                new ParamsBuilder(alice, "add_label_group").groupId(groupId)
+                        .expireAt(label.getExpire_at().add(ONE_HOUR)).build());
+        policyScore.invoke(owner, "set_label_group",
+                new ParamsBuilder(alice, "set_label_group").labelId(labelId).groupId(groupId)
+                        .baseHeight(label.getLast_updated()).build());
+        assertEquals(Boolean.TRUE, policyScore.call("is_authorized", policyId, bob.getKid()));
+        var group = (LabelGroup) policyScore.call("get_label_group", groupId);
+        // Negative: a negative expiration is not allowed
+        final var lastUpdated = group.getLast_updated();
+        assertThrows(UserRevertedException.class, () ->
+                policyScore.invoke(owner, "update_group_expiry",
+                        new ParamsBuilder(alice, "update_group_expiry").groupId(groupId)
+                                .baseHeight(lastUpdated)
+                                .expireAt(BigInteger.ONE.negate()).build()));
+        policyScore.invoke(owner, "update_group_expiry",
+                new ParamsBuilder(alice, "update_group_expiry").groupId(groupId)
+                        .baseHeight(group.getLast_updated())
+                        .expireAt(BigInteger.ZERO).build());
+        checkPolicy = (Map) policyScore.call("check_policy", policyId);
+        assertFalse((Boolean) checkPolicy.get("checked"));
+        assertEquals(BigInteger.ZERO, checkPolicy.get("label_expire_at"));
+        assertEquals(Boolean.FALSE, policyScore.call("is_authorized", policyId, bob.getKid()));
+        // the group update is recorded in the change feed
+        var updatedGroup = (LabelGroup) policyScore.call("get_label_group", groupId);
+        var changes = (PageOfChange) policyScore.call("get_changes_since", updatedGroup.getLast_updated(), 0L, 0);
+        var lastChange = changes.getChanges()[changes.getChanges().length - 1];
+        assertEquals(ChangeRecord.TYPE_GROUP, lastChange.getType());
+        assertEquals(groupId, lastChange.getId());
+        // Negative: a policy cannot be added to the label expired by its group
+        assertThrows(UserRevertedException.class, () ->
+                policyScore.invoke(owner, "add_policy",
+                        new ParamsBuilder(alice, "add_policy").labelId(labelId)
+                                .policyId(createPolicyId(labelId, alice)).consumer(alice).build()));
+
+        // the group membership and the group expiration are committed into the state root
+        label = (LabelInfo) policyScore.call("get_label", labelId);
+        group = (LabelGroup) policyScore.call("get_label_group", groupId);
+        stateRoot = (Map) policyScore.call("get_state_root");
+        proof = (Map) policyScore.call("get_policy_proof", policyId);
+        assertEquals(groupId, proof.get("group_id"));
+        assertEquals(BigInteger.ZERO, proof.get("group_expire_at"));
+        labelProof = new SparseMerkleTree.Proof(
+                (BigInteger) proof.get("label_bitmap"), (byte[][]) proof.get("label_siblings"));
+        assertArrayEquals((byte[]) stateRoot.get("label_root"),
+                SparseMerkleTree.computeRoot(SparseMerkleTree.keyOf(labelId), label.commitment(), labelProof));
+        var groupProof = new SparseMerkleTree.Proof(
+                (BigInteger) proof.get("group_bitmap"), (byte[][]) proof.get("group_siblings"));
+        assertArrayEquals((byte[]) stateRoot.get("group_root"),
+                SparseMerkleTree.computeRoot(SparseMerkleTree.keyOf(groupId), group.commitment(), groupProof));
+
+        // removing the label from the group restores its own expiration
+        label = (LabelInfo) policyScore.call("get_label", labelId);
+        assertEquals(groupId, label.getGroup_id());
+        policyScore.invoke(owner, "set_label_group",
+                new ParamsBuilder(alice, "set_label_group").labelId(labelId).groupId("")
+                        .baseHeight(label.getLast_updated()).build());
+        assertEquals(Boolean.TRUE, policyScore.call("is_authorized", policyId, bob.getKid()));
 
         // Negative: try to add with the same policyId
         assertThrows(UserRevertedException.class, () ->
@@ -437,6 +838,7 @@ public class PolicyTest extends TestBase {
         checkPolicy = (Map) policyScore.call("check_policy", policyId);
         System.out.println(checkPolicy);
         assertFalse((Boolean) checkPolicy.get("checked"));
+        assertEquals(Boolean.FALSE, policyScore.call("is_authorized", policyId, bob.getKid()));
 
         // Negative: try to update with an invalid expireAt
         BigInteger invalidExpireAt = label.getExpire_at().add(BigInteger.ONE);
@@ -473,10 +875,449 @@ public class PolicyTest extends TestBase {
         // cleanup: remove label
         removeLabel(alice, labelId);
         assertEquals(BigInteger.ZERO, policyScore.call(BigInteger.class, "get_policy_count"));
+        // the leaves of the removed policies are cleared, so the policy tree is empty again
+        var emptyRoot = SparseMerkleTree.computeRoot(0, new byte[32],
+                new SparseMerkleTree.Proof(BigInteger.ZERO, new byte[0][]));
+        assertArrayEquals(emptyRoot, (byte[]) ((Map) policyScore.call("get_state_root")).get("policy_root"));
     }
 
     @Test
-    void nodeTest() {
+    void scopedPolicyTest() throws Exception {
+        // labels of alice: labelId and labelId3 are in the category, labelId2 is not
+        String category = "scope_" + rand.nextInt(10000);
+        String labelId = addRandomLabel(alice);
+        String labelId2 = addRandomLabel(alice);
+        String labelId3 = addRandomLabel(alice);
+        for (var id : new String[] {labelId, labelId3}) {
+            var label = (LabelInfo) policyScore.call("get_label", id);
+            policyScore.invoke(owner, "update_label",
+                    new ParamsBuilder(alice, "update_label").labelId(id)
+                            .category(category)
+                            .baseHeight(label.getLast_updated()).build());
+        }
+        // a label of bob in the same category
+        String bobLabelId = addRandomLabel(bob);
+        var bobLabel = (LabelInfo) policyScore.call("get_label", bobLabelId);
+        policyScore.invoke(owner, "update_label",
+                new ParamsBuilder(bob, "update_label").labelId(bobLabelId)
+                        .category(category)
+                        .baseHeight(bobLabel.getLast_updated()).build());
+        var policyCount = policyScore.call(BigInteger.class, "get_policy_count");
+
+        // a policy over a set of labels
+        var setPolicyId = createPolicyId("scoped", alice, "set_" + labelId);
+        policyScore.invoke(owner, "add_scoped_policy",
+                new ParamsBuilder(alice, "add_scoped_policy").policyId(setPolicyId).nonce("set_" + labelId)
+                        .labelIds(labelId, labelId2).consumer(bob).build());
+        var checkPolicy = (Map) policyScore.call("check_policy_on", setPolicyId, labelId);
+        assertTrue((Boolean) checkPolicy.get("checked"));
+        assertEquals(bob.getKid(), checkPolicy.get("consumer"));
+        assertTrue((Boolean) ((Map) policyScore.call("check_policy_on", setPolicyId, labelId2)).get("checked"));
+        // Negative: the label outside the set
+        assertFalse((Boolean) ((Map) policyScore.call("check_policy_on", setPolicyId, labelId3)).get("checked"));
+        // a scoped policy has no auth record, and is_authorized checks it without a label instead of reverting
+        assertEquals(Boolean.TRUE, policyScore.call("is_authorized", setPolicyId, bob.getKid()));
+        assertEquals(Boolean.FALSE, policyScore.call("is_authorized", setPolicyId, alice.getKid()));
+
+        // a policy over the category of the owner
+        var categoryPolicyId = createPolicyId("scoped", alice, "category_" + labelId);
+        policyScore.invoke(owner, "add_scoped_policy",
+                new ParamsBuilder(alice, "add_scoped_policy").policyId(categoryPolicyId).nonce("category_" + labelId)
+                        .category(category).consumer(bob).build());
+        assertTrue((Boolean) ((Map) policyScore.call("check_policy_on", categoryPolicyId, labelId)).get("checked"));
+        assertTrue((Boolean) ((Map) policyScore.call("check_policy_on", categoryPolicyId, labelId3)).get("checked"));
+        // Negative: the label outside the category
+        assertFalse((Boolean) ((Map) policyScore.call("check_policy_on", categoryPolicyId, labelId2)).get("checked"));
+        // Negative: the label of another owner in the same category
+        assertFalse((Boolean) ((Map) policyScore.call("check_policy_on", categoryPolicyId, bobLabelId)).get("checked"));
+        assertEquals(policyCount.add(BigInteger.TWO), policyScore.call(BigInteger.class, "get_policy_count"));
+
+        // Negative: the labels of another owner
+        assertThrows(UserRevertedException.class, () ->
+                policyScore.invoke(owner, "add_scoped_policy",
+                        new ParamsBuilder(alice, "add_scoped_policy")
+                                .policyId(createPolicyId("scoped", alice, "set_" + bobLabelId)).nonce("set_" + bobLabelId)
+                                .labelIds(labelId, bobLabelId).consumer(bob).build()));
+        // Negative: neither label_ids nor category
+        assertThrows(UserRevertedException.class, () ->
+                policyScore.invoke(owner, "add_scoped_policy",
+                        new ParamsBuilder(alice, "add_scoped_policy")
+                                .policyId(createPolicyId("scoped", alice, "none_" + labelId)).nonce("none_" + labelId)
+                                .consumer(bob).build()));
+        // Negative: the policy_id must be derived from the owner and the nonce,
+        // e.g. the future policy_id of add_policy cannot be taken
+        assertThrows(UserRevertedException.class, () ->
+                policyScore.invoke(owner, "add_scoped_policy",
+                        new ParamsBuilder(alice, "add_scoped_policy").policyId(createPolicyId(labelId3, bob))
+                                .nonce("squat_" + labelId).labelIds(labelId3).consumer(bob).build()));
+        // Negative: the policy_id derived for another owner
+        assertThrows(UserRevertedException.class, () ->
+                policyScore.invoke(owner, "add_scoped_policy",
+                        new ParamsBuilder(alice, "add_scoped_policy")
+                                .policyId(createPolicyId("scoped", bob, "set_" + labelId3)).nonce("set_" + labelId3)
+                                .labelIds(labelId3).consumer(bob).build()));
+
+        // Negative: only the owner can remove the scoped policy
+        var policy = (PolicyInfo) policyScore.call("get_policy", setPolicyId);
+        assertThrows(UserRevertedException.class, () ->
+                policyScore.invoke(owner, "remove_scoped_policy",
+                        new ParamsBuilder(bob, "remove_scoped_policy").policyId(setPolicyId)
+                                .baseHeight(policy.getLast_updated()).build()));
+
+        // removing the scoped policies decrements the policy count
+        policyScore.invoke(owner, "remove_scoped_policy",
+                new ParamsBuilder(alice, "remove_scoped_policy").policyId(setPolicyId)
+                        .baseHeight(policy.getLast_updated()).build());
+        assertNull(policyScore.call("get_policy", setPolicyId));
+        assertEquals(Boolean.FALSE, policyScore.call("is_authorized", setPolicyId, bob.getKid()));
+        assertEquals(policyCount.add(BigInteger.ONE), policyScore.call(BigInteger.class, "get_policy_count"));
+        var policy2 = (PolicyInfo) policyScore.call("get_policy", categoryPolicyId);
+        policyScore.invoke(owner, "remove_scoped_policy",
+                new ParamsBuilder(alice, "remove_scoped_policy").policyId(categoryPolicyId)
+                        .baseHeight(policy2.getLast_updated()).build());
+        assertEquals(policyCount, policyScore.call(BigInteger.class, "get_policy_count"));
+
+        // cleanup: remove labels
+        removeLabel(alice, labelId);
+        removeLabel(alice, labelId2);
+        removeLabel(alice, labelId3);
+        removeLabel(bob, bobLabelId);
+    }
+
+    @Test
+    void groupPolicyTest() throws Exception {
+        // add label
+        String labelId = addRandomLabel(alice);
+        var threshold = policyScore.call(BigInteger.class, "get_system_threshold");
+
+        // add a group policy with bob as the initial consumer
+        // Negative: the policy_id of add_policy is not a group policy id
+        assertThrows(UserRevertedException.class, () ->
+                policyScore.invoke(owner, "add_group_policy",
+                        new ParamsBuilder(alice, "add_group_policy").labelId(labelId)
+                                .policyId(createPolicyId(labelId, bob)).nonce(labelId).consumers(bob)
+                                .threshold(threshold).build()));
+        var policyId = createPolicyId("group", alice, labelId);
+        policyScore.invoke(owner, "add_group_policy",
+                new ParamsBuilder(alice, "add_group_policy").labelId(labelId)
+                        .policyId(policyId).nonce(labelId).consumers(bob)
+                        .threshold(threshold).build());
+        var policy = (PolicyInfo) policyScore.call("get_policy", policyId);
+        System.out.println(policy);
+        assertTrue(policy.isGroup());
+        assertNull(policy.getConsumer());
+        assertEquals(BigInteger.ONE, policyScore.call(BigInteger.class, "get_policy_count"));
+
+        // ensure check_policy_for returns true only for the members
+        DidKeyHolder carol = createDidAndKeyHolder("key4");
+        var checkPolicy = (Map) policyScore.call("check_policy_for", policyId, bob.getKid());
+        assertTrue((Boolean) checkPolicy.get("checked"));
+        checkPolicy = (Map) policyScore.call("check_policy_for", policyId, carol.getKid());
+        assertFalse((Boolean) checkPolicy.get("checked"));
+
+        // add carol and remove bob without rewriting the policy
+        policyScore.invoke(owner, "add_policy_consumers",
+                new ParamsBuilder(alice, "add_policy_consumers").policyId(policyId)
+                        .consumers(carol)
+                        .baseHeight(policy.getLast_updated()).build());
+        policy = (PolicyInfo) policyScore.call("get_policy", policyId);
+        policyScore.invoke(owner, "remove_policy_consumers",
+                new ParamsBuilder(alice, "remove_policy_consumers").policyId(policyId)
+                        .consumers(bob)
+                        .baseHeight(policy.getLast_updated()).build());
+        checkPolicy = (Map) policyScore.call("check_policy_for", policyId, carol.getKid());
+        assertTrue((Boolean) checkPolicy.get("checked"));
+        checkPolicy = (Map) policyScore.call("check_policy_for", policyId, bob.getKid());
+        assertFalse((Boolean) checkPolicy.get("checked"));
+        assertEquals(Boolean.TRUE, policyScore.call("is_authorized", policyId, carol.getKid()));
+        assertEquals(Boolean.FALSE, policyScore.call("is_authorized", policyId, bob.getKid()));
+
+        var page = (PageOfConsumer) policyScore.call("get_policy_consumers", policyId, 0, 0);
+        assertEquals(1, page.getTotal());
+        assertEquals(carol.getKid(), page.getIds()[0]);
+
+        // Negative: a stale signature cannot be replayed
+        final long staleHeight = policy.getLast_updated();
+        assertThrows(UserRevertedException.class, () ->
+                policyScore.invoke(owner, "remove_policy_consumers",
+                        new ParamsBuilder(alice, "remove_policy_consumers").policyId(policyId)
+                                .consumers(carol)
+                                .baseHeight(staleHeight).build()));
+
+        // cleanup: remove label
+        removeLabel(alice, labelId);
+        assertNull(policyScore.call("get_policy", policyId));
+        assertEquals(BigInteger.ZERO, policyScore.call(BigInteger.class, "get_policy_count"));
+    }
+
+    @Test
+    void authRecordTest() throws Exception {
+        // a label with more policies than refreshed by update_label, so some auth records are left stale
+        String labelId = addRandomLabel(alice);
+        int size = 17;
+        var consumers = new DidKeyHolder[size];
+        var policyIds = new String[size];
+        for (int i = 0; i < size; i++) {
+            consumers[i] = createDidAndKeyHolder("key" + (10 + i));
+            policyIds[i] = createPolicyId(labelId, consumers[i]);
+            policyScore.invoke(owner, "add_policy",
+                    new ParamsBuilder(alice, "add_policy").labelId(labelId)
+                            .policyId(policyIds[i]).consumer(consumers[i]).build());
+        }
+        String policyId = policyIds[size - 1];
+        DidKeyHolder consumer = consumers[size - 1];
+        assertEquals(Boolean.TRUE, policyScore.call("is_authorized", policyId, consumer.getKid()));
+
+        // shorten the label, so the stale records must be checked against the label itself
+        var label = (LabelInfo) policyScore.call("get_label", labelId);
+        var timestamp = BigInteger.valueOf(sm.getBlock().getTimestamp());
+        policyScore.invoke(owner, "update_label",
+                new ParamsBuilder(alice, "update_label").labelId(labelId)
+                        .baseHeight(label.getLast_updated())
+                        .expireAt(timestamp.add(ONE_SECOND.multiply(BigInteger.valueOf(5)))).build());
+        assertEquals(Boolean.TRUE, policyScore.call("is_authorized", policyId, consumer.getKid()));
+        sm.getBlock().increase(10);
+        assertEquals(Boolean.FALSE, policyScore.call("is_authorized", policyId, consumer.getKid()));
+        assertFalse((Boolean) ((Map) policyScore.call("check_policy", policyId)).get("checked"));
+
+        // the stale records are rewritten by commit_records with the same result
+        policyScore.invoke(owner, "commit_records", new String[0], policyIds);
+        assertEquals(Boolean.FALSE, policyScore.call("is_authorized", policyId, consumer.getKid()));
+
+        // the removed label and the unknown policy are not authorized instead of reverting
+        removeLabel(alice, labelId);
+        assertEquals(Boolean.FALSE, policyScore.call("is_authorized", policyId, consumer.getKid()));
+        assertEquals(Boolean.FALSE, policyScore.call("is_authorized", "unknown_" + labelId, consumer.getKid()));
+    }
+
+    @Test
+    void eventV2Test() throws Exception {
+        var instance = (PdsPolicy) policyScore.getInstance();
+        var spy = Mockito.spy(instance);
+        policyScore.setInstance(spy);
+        try {
+            String labelId = addRandomLabel(alice);
+            var label = (LabelInfo) policyScore.call("get_label", labelId);
+            var expireAt = label.getExpire_at().subtract(ONE_SECOND);
+            policyScore.invoke(owner, "update_label",
+                    new ParamsBuilder(alice, "update_label").labelId(labelId)
+                            .expireAt(expireAt).category("v2_category")
+                            .baseHeight(label.getLast_updated()).build());
+            label = (LabelInfo) policyScore.call("get_label", labelId);
+            assertEquals(expireAt, label.getExpire_at());
+            // LabelUpdatedV2 carries the attributes after the update
+            Mockito.verify(spy).LabelUpdatedV2(labelId, expireAt, label.getProducer(), label.getProducer_expire_at(),
+                    "v2_category", label.getLast_updated(), "");
+
+            // set_label_group emits LabelUpdatedV2 with the group
+            String groupId = "group_" + rand.nextInt(10000);
+            policyScore.invoke(owner, "add_label_group",
+                    new ParamsBuilder(alice, "add_label_group").groupId(groupId)
+                            .expireAt(expireAt).build());
+            policyScore.invoke(owner, "set_label_group",
+                    new ParamsBuilder(alice, "set_label_group").labelId(labelId).groupId(groupId)
+                            .baseHeight(label.getLast_updated()).build());
+            label = (LabelInfo) policyScore.call("get_label", labelId);
+            Mockito.verify(spy).LabelUpdatedV2(labelId, expireAt, label.getProducer(), label.getProducer_expire_at(),
+                    "v2_category", label.getLast_updated(), groupId);
+
+            // PolicyUpdatedV2 carries the expiration after the update
+            var policyId = createPolicyId(labelId, bob);
+            policyScore.invoke(owner, "add_policy",
+                    new ParamsBuilder(alice, "add_policy").labelId(labelId)
+                            .policyId(policyId).consumer(bob).build());
+            var policy = (PolicyInfo) policyScore.call("get_policy", policyId);
+            var policyExpireAt = expireAt.subtract(ONE_SECOND);
+            policyScore.invoke(owner, "update_policy",
+                    new ParamsBuilder(alice, "update_policy").policyId(policyId)
+                            .baseHeight(policy.getLast_updated())
+                            .expireAt(policyExpireAt).build());
+            policy = (PolicyInfo) policyScore.call("get_policy", policyId);
+            Mockito.verify(spy).PolicyUpdatedV2(policyId, policyExpireAt, policy.getLast_updated());
+
+            removeLabel(alice, labelId);
+        } finally {
+            policyScore.setInstance(instance);
+        }
+    }
+
+    @Test
+    void shardedCounterTest() throws Exception {
+        // the total is the sum of all shards, even if a shard becomes negative
+        runInScore(() -> {
+            var counter = new ShardedCounter("test_counter", 4);
+            for (int i = 0; i < 10; i++) {
+                counter.add("key_" + i, i);
+            }
+            assertEquals(BigInteger.valueOf(45), counter.total());
+            counter.add("key_1", -10);
+            counter.add("key_9", 0);
+            assertEquals(BigInteger.valueOf(35), counter.total());
+        });
+
+        // the label counter is sharded by the label_ids
+        var labelCount = policyScore.call(BigInteger.class, "get_label_count");
+        var labelIds = new String[8];
+        for (int i = 0; i < labelIds.length; i++) {
+            labelIds[i] = addRandomLabel(alice);
+        }
+        assertEquals(labelCount.add(BigInteger.valueOf(labelIds.length)),
+                policyScore.call(BigInteger.class, "get_label_count"));
+        for (var labelId : labelIds) {
+            removeLabel(alice, labelId);
+        }
+        assertEquals(labelCount, policyScore.call(BigInteger.class, "get_label_count"));
+    }
+
+    @Test
+    void generationalMapTest() throws Exception {
+        runInScore(() -> {
+            var map = new GenerationalMap<String, String>("test_gen", String.class, String.class, GenerationalMap.INDEXED);
+            map.set("a", "1");
+            map.set("b", "2");
+            // clear bumps the generation, so the old entries are not visible anymore
+            assertEquals(2, map.clear());
+            assertEquals(0, map.length());
+            assertNull(map.get("a"));
+            assertFalse(map.isReclaimed());
+            map.set("a", "3");
+            assertEquals("3", map.get("a"));
+
+            // the old entries are deleted by reclaim within the given budget
+            assertEquals("b", map.nextReclaimKey());
+            assertEquals(1, map.reclaim(1));
+            assertFalse(map.isReclaimed());
+            assertEquals(1, map.reclaim(10));
+            assertTrue(map.isReclaimed());
+            assertNull(map.nextReclaimKey());
+            assertEquals("3", map.get("a"));
+            assertEquals(1, map.length());
+        });
+    }
+
+    @Test
+    void indexedMapMigrationTest() throws Exception {
+        runInScore(() -> {
+            var legacy = new EnumerableMap<String, String>("test_migrate", String.class, String.class);
+            for (int i = 0; i < 5; i++) {
+                legacy.set("k" + i, "v" + i);
+            }
+            // the entries are readable while migrating, whether they are migrated or not
+            var map = new GenerationalMap<String, String>("test_migrate", String.class, String.class,
+                    GenerationalMap.MIGRATING);
+            assertEquals(5, map.length());
+            assertFalse(map.migrate(2));
+            assertEquals("v0", map.get("k0"));
+            assertEquals("v4", map.get("k4"));
+            map.set("k5", "v5");
+            map.remove("k1");
+            assertTrue(map.migrate(10));
+
+            // all entries are found in the indexed format after the migration
+            var indexed = new GenerationalMap<String, String>("test_migrate", String.class, String.class,
+                    GenerationalMap.INDEXED);
+            assertEquals(5, indexed.length());
+            assertNull(indexed.get("k1"));
+            for (var i : new int[] {0, 2, 3, 4, 5}) {
+                assertEquals("v" + i, indexed.get("k" + i));
+            }
+        });
+    }
+
+    @Test
+    void linkedSetCursorTest() throws Exception {
+        runInScore(() -> {
+            var set = new LinkedSet<String>("test_linked", String.class);
+            for (int i = 1; i <= 70; i++) {
+                set.add("e" + i);
+            }
+            // a cursor stays valid after its element and a few before it are removed
+            for (int i = 60; i <= 66; i++) {
+                set.remove("e" + i);
+            }
+            assertEquals("e67", set.get(set.next(66)));
+            // the cursor expires once more than 64 elements before it have been removed
+            for (int i = 1; i < 60; i++) {
+                set.remove("e" + i);
+            }
+            assertThrows(UserRevertedException.class, () -> set.next(66));
+            // the cursors of the remaining elements are not affected
+            assertEquals("e68", set.get(set.next(67)));
+            assertEquals(67, set.next(0));
+        });
+    }
+
+    @Test
+    void ringBufferTest() throws Exception {
+        runInScore(() -> {
+            var buffer = new RingBuffer<String>("test_ring", String.class, 3);
+            for (int i = 0; i < 5; i++) {
+                buffer.add("e" + i);
+            }
+            // the oldest elements are overwritten after the buffer wraps around
+            assertEquals(5, buffer.getTotal());
+            assertEquals(2, buffer.getOldest());
+            assertNull(buffer.get(0));
+            assertNull(buffer.get(1));
+            for (int i = 2; i < 5; i++) {
+                assertEquals("e" + i, buffer.get(i));
+            }
+            assertNull(buffer.get(5));
+        });
+    }
+
+    @Test
+    void internTableTest() throws Exception {
+        runInScore(() -> {
+            long natural = new InternTable("test_probe").intern("value_a");
+            // occupy the id of value_a, as if another value had the same hash
+            DictDB<Long, String> values = Context.newDictDB("test_intern_values", String.class);
+            values.set(natural, "value_b");
+
+            // the next id is probed on the collision
+            var table = new InternTable("test_intern");
+            long id = table.intern("value_a");
+            assertEquals(natural + 1, id);
+            assertEquals("value_a", table.resolve(id));
+            assertEquals("value_b", table.resolve(natural));
+            assertEquals(id, table.idOf("value_a").longValue());
+            assertEquals(id, table.intern("value_a"));
+        });
+    }
+
+    @Test
+    void recordVersionTest() {
+        // a label record of version 1 has no shared_pins and group_id
+        var w = Context.newByteArrayObjectWriter("RLPn");
+        w.writeListOfNullable(VersionTag.tag(1), "label_v1", alice.getDid(), "name", "public_key",
+                ONE_HOUR, "category", null, BigInteger.ZERO, 1L, 1L, 0L, 0, 0L, 0L, 0L);
+        var label = LabelInfo.readObject(Context.newByteArrayObjectReader("RLPn", w.toByteArray()));
+        assertEquals("label_v1", label.getLabel_id());
+        assertEquals(ONE_HOUR, label.getExpire_at());
+        assertFalse(label.hasSharedPins());
+        assertNull(label.getGroup_id());
+
+        // it is upgraded to the current version when written back
+        w = Context.newByteArrayObjectWriter("RLPn");
+        LabelInfo.writeObject(w, label);
+        var r = Context.newByteArrayObjectReader("RLPn", w.toByteArray());
+        r.beginList();
+        assertEquals(2, VersionTag.read(r, 2).getVersion());
+        assertEquals("label_v1", r.readString());
+
+        // the labels added before the handles keep their label_id as the storage prefix
+        assertEquals(0L, label.handle());
+        assertEquals("label_v1", label.getStoragePrefix());
+        w = Context.newByteArrayObjectWriter("RLPn");
+        w.writeListOfNullable("label_v0", alice.getDid(), "name", "public_key",
+                ONE_HOUR, "category", null, BigInteger.ZERO, 1L, 1L, 0L);
+        label = LabelInfo.readObject(Context.newByteArrayObjectReader("RLPn", w.toByteArray()));
+        assertEquals("label_v0", label.getLabel_id());
+        assertEquals("label_v0", label.getStoragePrefix());
+    }
+
+    @Test
+    void nodeTest() throws Exception {
         // ensure there is no node
         NodeInfo[] nodes = (NodeInfo[]) policyScore.call("all_nodes");
         assertEquals(0, nodes.length);
@@ -524,5 +1365,133 @@ public class PolicyTest extends TestBase {
         policyScore.invoke(owner, "remove_node", peerId);
         nodes = (NodeInfo[]) policyScore.call("all_nodes");
         assertEquals(4, nodes.length);
+
+        // the cursor stays valid even if its node is removed in between
+        var nodePage = (PageOfNode) policyScore.call("get_nodes", 0L, 2);
+        assertEquals(2, nodePage.getSize());
+        assertEquals("peer_test1", nodePage.getIds()[1].getPeer_id());
+        policyScore.invoke(owner, "remove_node", "peer_test1");
+        owner.addBalance(ICX_100);
+        policyScore.invoke(owner, ICX_100, "add_node", "peer_test1", "node_1", "http://localhost:9001");
+        nodePage = (PageOfNode) policyScore.call("get_nodes", nodePage.getCursor(), 2);
+        assertEquals("peer_test2", nodePage.getIds()[0].getPeer_id());
+        assertEquals("peer_test3", nodePage.getIds()[1].getPeer_id());
+        nodePage = (PageOfNode) policyScore.call("get_nodes", nodePage.getCursor(), 2);
+        assertEquals(1, nodePage.getSize());
+        assertEquals("peer_test1", nodePage.getIds()[0].getPeer_id());
+        assertEquals(0L, nodePage.getCursor());
+
+        // select nodes for a policy
+        String labelId = addRandomLabel(alice);
+        var policyId = createPolicyId(labelId, bob);
+        policyScore.invoke(owner, "add_policy",
+                new ParamsBuilder(alice, "add_policy").labelId(labelId)
+                        .policyId(policyId).consumer(bob)
+                        .threshold(policyScore.call(BigInteger.class, "get_system_threshold")).build());
+        var selected = (NodeInfo[]) policyScore.call("select_nodes", policyId, 2);
+        assertEquals(2, selected.length);
+        // the selection is deterministic and the top entries are kept for a larger count
+        var selected2 = (NodeInfo[]) policyScore.call("select_nodes", policyId, 3);
+        assertEquals(3, selected2.length);
+        for (int i = 0; i < selected.length; i++) {
+            assertEquals(selected[i].getPeer_id(), selected2[i].getPeer_id());
+        }
+        // the count is limited by the number of nodes
+        assertEquals(4, ((NodeInfo[]) policyScore.call("select_nodes", policyId, 10)).length);
+
+        // publish the capacity of a node
+        policyScore.invoke(owner, "set_node_capacity", "peer_test0", 100L, 4, "ap-northeast-2");
+        var status = (NodeStatus) policyScore.call("get_node_status", "peer_test0");
+        System.out.println(status);
+        assertEquals(100L, status.getMax_rps());
+        assertEquals("ap-northeast-2", status.getRegion());
+        assertTrue(status.getAlive());
+
+        // the region index follows the region of the node
+        var regionPage = (PageOfNode) policyScore.call("get_nodes_by_region", "ap-northeast-2", 0L, 0);
+        assertEquals(1, regionPage.getTotal());
+        assertEquals("peer_test0", regionPage.getIds()[0].getPeer_id());
+        policyScore.invoke(owner, "update_node", "peer_test0", null, null, null, "us-east-1");
+        regionPage = (PageOfNode) policyScore.call("get_nodes_by_region", "ap-northeast-2", 0L, 0);
+        assertEquals(0, regionPage.getTotal());
+        regionPage = (PageOfNode) policyScore.call("get_nodes_by_region", "us-east-1", 0L, 0);
+        assertEquals(1, regionPage.getTotal());
+
+        // once the heartbeats are enabled, only the nodes sending heartbeats are selected
+        policyScore.invoke(owner, "set_heartbeat_interval", BigInteger.valueOf(10));
+        policyScore.invoke(owner, "heartbeat", "peer_test1", true);
+        var allStatus = (NodeStatus[]) policyScore.call("all_node_status");
+        int alive = 0;
+        for (var s : allStatus) {
+            if (s.getAlive()) {
+                alive++;
+                assertEquals("peer_test1", s.getPeer_id());
+                assertTrue(s.getSaturated());
+            }
+        }
+        assertEquals(1, alive);
+        selected = (NodeInfo[]) policyScore.call("select_nodes", policyId, 2);
+        assertEquals(1, selected.length);
+        assertEquals("peer_test1", selected[0].getPeer_id());
+        policyScore.invoke(owner, "set_heartbeat_interval", BigInteger.ZERO);
+
+        // distribute the reward to the nodes in proportion to their stake
+        assertEquals(ICX_100.multiply(BigInteger.valueOf(4)), policyScore.call(BigInteger.class, "get_total_stake"));
+        BigInteger ICX_40 = BigInteger.valueOf(40).multiply(ICX);
+        owner.addBalance(ICX_40);
+        policyScore.invoke(owner, ICX_40, "deposit_reward");
+        BigInteger ICX_10 = BigInteger.valueOf(10).multiply(ICX);
+        assertEquals(ICX_10, policyScore.call(BigInteger.class, "get_pending_reward", "peer_test0"));
+        var balance = owner.getBalance();
+        policyScore.invoke(owner, "claim_reward", "peer_test0");
+        assertEquals(balance.add(ICX_10), owner.getBalance());
+        assertEquals(BigInteger.ZERO, policyScore.call(BigInteger.class, "get_pending_reward", "peer_test0"));
+        assertEquals(ICX_10, policyScore.call(BigInteger.class, "get_pending_reward", "peer_test1"));
+
+        // the stakes of the removed nodes are unbonded and can be claimed after the unbonding period
+        BigInteger ICX_200 = ICX_100.multiply(BigInteger.TWO);
+        var unbonding = (Map) policyScore.call("get_unbonding", owner.getAddress());
+        assertEquals(ICX_200, unbonding.get("claimable"));
+        assertEquals(BigInteger.ZERO, unbonding.get("locked"));
+        balance = owner.getBalance();
+        policyScore.invoke(owner, "claim_unbonded");
+        assertEquals(balance.add(ICX_200), owner.getBalance());
+        assertThrows(UserRevertedException.class, () -> policyScore.invoke(owner, "claim_unbonded"));
+
+        // Negative: the stake cannot be withdrawn below the minimum stake
+        assertThrows(UserRevertedException.class, () ->
+                policyScore.invoke(owner, "unstake", "peer_test2", BigInteger.ONE));
+
+        // the slot of a removed node is recycled without its heartbeats
+        policyScore.invoke(owner, "set_heartbeat_interval", BigInteger.valueOf(10));
+        // let the earlier heartbeats expire
+        sm.getBlock().increase(20);
+        policyScore.invoke(owner, "heartbeat", "peer_test2", false);
+        assertTrue(((NodeStatus) policyScore.call("get_node_status", "peer_test2")).getAlive());
+        policyScore.invoke(owner, "remove_node", "peer_test2");
+        owner.addBalance(ICX_100.add(ICX_40));
+        policyScore.invoke(owner, ICX_40, "deposit_reward");
+        policyScore.invoke(owner, ICX_100, "add_node", "peer_test9", "node_9", "http://localhost:9009");
+        // the node added after the deposits doesn't take the rewards deposited for the existing nodes
+        assertEquals(BigInteger.ZERO, policyScore.call(BigInteger.class, "get_pending_reward", "peer_test9"));
+        var nodeBalance = owner.getBalance();
+        policyScore.invoke(owner, "claim_reward", "peer_test9");
+        assertEquals(nodeBalance, owner.getBalance());
+        assertFalse(((NodeStatus) policyScore.call("get_node_status", "peer_test9")).getAlive());
+        policyScore.invoke(owner, "heartbeat", "peer_test9", false);
+        allStatus = (NodeStatus[]) policyScore.call("all_node_status");
+        alive = 0;
+        for (var s : allStatus) {
+            if (s.getAlive()) {
+                alive++;
+                assertEquals("peer_test9", s.getPeer_id());
+                assertFalse(s.getSaturated());
+            }
+        }
+        assertEquals(1, alive);
+        policyScore.invoke(owner, "set_heartbeat_interval", BigInteger.ZERO);
+
+        // cleanup: remove label
+        removeLabel(alice, labelId);
     }
 }
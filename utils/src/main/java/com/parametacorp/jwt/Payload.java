@@ -4,6 +4,8 @@ import com.eclipsesource.json.Json;
 import com.eclipsesource.json.JsonObject;
 import com.eclipsesource.json.JsonValue;
 
+import java.math.BigInteger;
+
 public class Payload {
     static final String KEY_METHOD = "method";
     static final String KEY_PARAM = "param";
@@ -64,6 +66,12 @@ public class Payload {
         private String labelId;
         private String dataId;
         private String policyId;
+        private String consumers;
+        private String labelIds;
+        private String category;
+        private String quota;
+        private String groupId;
+        private String chunkCount;
         private long baseHeight;
 
         public Builder(String method) {
@@ -85,6 +93,37 @@ public class Payload {
             return this;
         }
 
+        public Builder consumers(String[] consumers) {
+            this.consumers = join(consumers);
+            return this;
+        }
+
+        public Builder labelIds(String[] labelIds) {
+            this.labelIds = join(labelIds);
+            return this;
+        }
+
+        public Builder category(String category) {
+            this.category = category;
+            return this;
+        }
+
+        public Builder quota(BigInteger quota) {
+            this.quota = quota.toString();
+            return this;
+        }
+
+        public Builder groupId(String groupId) {
+            this.groupId = groupId;
+            return this;
+        }
+
+        public Builder chunkCount(int chunkCount) {
+            // signed only for a manifest, so the signatures of the plain data are unchanged
+            this.chunkCount = (chunkCount > 0) ? Integer.toString(chunkCount) : null;
+            return this;
+        }
+
         public Builder baseHeight(long height) {
             this.baseHeight = height;
             return this;
@@ -95,6 +134,12 @@ public class Payload {
             addIfNotNull(params, "label_id", Json.value(labelId));
             addIfNotNull(params, "data_id", Json.value(dataId));
             addIfNotNull(params, "policy_id", Json.value(policyId));
+            addIfNotNull(params, "consumers", Json.value(consumers));
+            addIfNotNull(params, "label_ids", Json.value(labelIds));
+            addIfNotNull(params, "category", Json.value(category));
+            addIfNotNull(params, "quota", Json.value(quota));
+            addIfNotNull(params, "group_id", Json.value(groupId));
+            addIfNotNull(params, "chunk_count", Json.value(chunkCount));
             if (baseHeight > 0) {
                 params.add("base_height", Json.value(baseHeight));
             }
@@ -105,6 +150,21 @@ public class Payload {
             return new Payload(payload);
         }
 
+        private static String join(String[] values) {
+            // a list of values is signed as a comma-separated string
+            if (values == null) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(values[i]);
+            }
+            return sb.toString();
+        }
+
         private void addIfNotNull(JsonObject params, String name, JsonValue value) {
             if (value != Json.NULL) {
                 params.add(name, value);
@@ -26,7 +26,7 @@ import score.DictDB;
  * @param <K> Key type
  * @param <V> Value type
  */
-public class EnumerableMap<K, V> {
+public class EnumerableMap<K, V> implements IterableMap<K, V> {
     private final EnumerableSet<K> keys;
     private final DictDB<K, V> values;
 
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2024 PARAMETA Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.parametacorp.util;
+
+import score.Context;
+import score.VarDB;
+
+/**
+ * GenerationalMap is an enumerable map which can be cleared in O(1):
+ *   - Entries are stored in the map of the current generation, whose id has SEPARATOR and the generation
+ *     as a suffix. The callers must not use SEPARATOR in the ids, so the suffixed ids never collide with them.
+ *   - clear() just bumps the generation, so lookups never see the entries of the old generations.
+ *   - The entries of the old generations are physically deleted later by reclaim(maxEntries).
+ * The generation zero uses the id as is, so the entries of an existing EnumerableMap are adopted without migration.
+ * The maps of the generations are either EnumerableMap (LEGACY) or IndexedMap (INDEXED), and the EnumerableMap
+ * of the generation zero can be converted to IndexedMap by migrate(maxEntries) in the MIGRATING format.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class GenerationalMap<K, V> {
+    public static final int LEGACY = 0;
+    public static final int MIGRATING = 1;
+    public static final int INDEXED = 2;
+    public static final char SEPARATOR = '\0';
+
+    private final String id;
+    private final Class<K> keyClass;
+    private final Class<V> valueClass;
+    private final int format;
+    private final VarDB<Integer> generation;
+    private final VarDB<Integer> reclaimed;
+    private IterableMap<K, V> current;
+
+    public GenerationalMap(String id, Class<K> keyClass, Class<V> valueClass) {
+        this(id, keyClass, valueClass, LEGACY);
+    }
+
+    public GenerationalMap(String id, Class<K> keyClass, Class<V> valueClass, int format) {
+        this.id = id;
+        this.keyClass = keyClass;
+        this.valueClass = valueClass;
+        this.format = format;
+        // the current generation
+        this.generation = Context.newVarDB(id + SEPARATOR + "gen", Integer.class);
+        // the oldest generation which is not reclaimed yet
+        this.reclaimed = Context.newVarDB(id + SEPARATOR + "reclaimed", Integer.class);
+    }
+
+    private IterableMap<K, V> mapOf(int gen) {
+        String mapId = (gen == 0) ? id : id + SEPARATOR + "g" + gen;
+        if (format == LEGACY) {
+            return new EnumerableMap<>(mapId, keyClass, valueClass);
+        }
+        // only the generation zero may have the entries not migrated yet
+        return new IndexedMap<>(mapId, keyClass, valueClass, format == MIGRATING && gen == 0);
+    }
+
+    private IterableMap<K, V> current() {
+        if (current == null) {
+            current = mapOf(generation.getOrDefault(0));
+        }
+        return current;
+    }
+
+    public int length() {
+        return current().length();
+    }
+
+    public boolean contains(K key) {
+        return current().contains(key);
+    }
+
+    public K getKey(int index) {
+        return current().getKey(index);
+    }
+
+    public V get(K key) {
+        return current().get(key);
+    }
+
+    public V getOrThrow(K key, String msg) {
+        var value = current().get(key);
+        if (value != null) {
+            return value;
+        }
+        Context.revert(msg);
+        return null; // should not reach here, but made compiler happy
+    }
+
+    public void set(K key, V value) {
+        current().set(key, value);
+    }
+
+    public void remove(K key) {
+        current().remove(key);
+    }
+
+    public int clear() {
+        int size = current().length();
+        if (size > 0) {
+            generation.set(generation.getOrDefault(0) + 1);
+            current = null;
+        }
+        return size;
+    }
+
+    public boolean migrate(int maxEntries) {
+        if (format != MIGRATING) {
+            return format == INDEXED;
+        }
+        // the old generations are not migrated, and are reclaimed in the MIGRATING format
+        if (generation.getOrDefault(0) != 0) {
+            return false;
+        }
+        return ((IndexedMap<K, V>) current()).migrate(maxEntries);
+    }
+
+    public boolean isReclaimed() {
+        return reclaimed.getOrDefault(0) >= generation.getOrDefault(0);
+    }
+
+    // returns the key which will be deleted next by reclaim(), or null if there are no more entries to delete
+    public K nextReclaimKey() {
+        int gen = generation.getOrDefault(0);
+        for (int oldest = reclaimed.getOrDefault(0); oldest < gen; oldest++) {
+            var map = mapOf(oldest);
+            int size = map.length();
+            if (size > 0) {
+                return map.getKey(size - 1);
+            }
+        }
+        return null;
+    }
+
+    public int reclaim(int maxEntries) {
+        int gen = generation.getOrDefault(0);
+        int oldest = reclaimed.getOrDefault(0);
+        int count = 0;
+        while (oldest < gen && count < maxEntries) {
+            var map = mapOf(oldest);
+            for (int i = map.length() - 1; i >= 0 && count < maxEntries; i--) {
+                map.remove(map.getKey(i));
+                count++;
+            }
+            if (map.length() > 0) {
+                break;
+            }
+            oldest++;
+        }
+        if (oldest != reclaimed.getOrDefault(0)) {
+            reclaimed.set(oldest);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2024 PARAMETA Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parametacorp.util;
+
+import score.ArrayDB;
+import score.ByteArrayObjectWriter;
+import score.Context;
+import score.DictDB;
+import score.ObjectReader;
+import score.VarDB;
+
+/**
+ * IndexedMap is an enumerable mapping structure which stores the value and the index of a key together:
+ *   - Inserting an entry writes the key array and the entry, and looking up an entry reads only the entry.
+ *   - Entries are enumerated in O(n). No guarantees are made on the ordering.
+ * The key array is shared with the EnumerableMap of the same id, so an existing EnumerableMap can be
+ * migrated in place by migrate(maxEntries). While migrating, the entries not migrated yet are still
+ * read from the EnumerableMap.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class IndexedMap<K, V> implements IterableMap<K, V> {
+    private static final String CODEC = "RLPn";
+
+    private final Class<V> valueClass;
+    private final ArrayDB<K> keys;
+    private final DictDB<K, byte[]> entries;
+    private final boolean migrating;
+    // the stores of the EnumerableMap, which are only accessed while migrating
+    private final DictDB<K, Integer> legacyIndexes;
+    private final DictDB<K, V> legacyValues;
+    private final VarDB<Integer> migrated;
+
+    public IndexedMap(String id, Class<K> keyClass, Class<V> valueClass) {
+        this(id, keyClass, valueClass, false);
+    }
+
+    public IndexedMap(String id, Class<K> keyClass, Class<V> valueClass, boolean migrating) {
+        this.valueClass = valueClass;
+        // array of keyClass, the same as the keys of EnumerableMap
+        this.keys = Context.newArrayDB(id + "_keys_entries", keyClass);
+        // key => [array index, value]
+        this.entries = Context.newDictDB(id + "_indexed", byte[].class);
+        this.migrating = migrating;
+        if (migrating) {
+            this.legacyIndexes = Context.newDictDB(id + "_keys_indexes", Integer.class);
+            this.legacyValues = Context.newDictDB(id + "_values", valueClass);
+            // number of the leading keys which have been migrated
+            this.migrated = Context.newVarDB(id + "_migrated", Integer.class);
+        } else {
+            this.legacyIndexes = null;
+            this.legacyValues = null;
+            this.migrated = null;
+        }
+    }
+
+    private static class Entry<V> {
+        private final int index;
+        private final V value;
+        // true if the entry is still stored in the EnumerableMap
+        private final boolean legacy;
+
+        Entry(int index, V value, boolean legacy) {
+            this.index = index;
+            this.value = value;
+            this.legacy = legacy;
+        }
+    }
+
+    private byte[] encode(int index, V value) {
+        ByteArrayObjectWriter w = Context.newByteArrayObjectWriter(CODEC);
+        w.beginList(2);
+        w.write(index);
+        w.write(value);
+        w.end();
+        return w.toByteArray();
+    }
+
+    private Entry<V> getEntry(K key) {
+        byte[] bytes = entries.get(key);
+        if (bytes != null) {
+            ObjectReader r = Context.newByteArrayObjectReader(CODEC, bytes);
+            r.beginList();
+            int index = r.readInt();
+            V value = r.read(valueClass);
+            r.end();
+            return new Entry<>(index, value, false);
+        }
+        if (migrating) {
+            Integer index = legacyIndexes.get(key);
+            if (index != null) {
+                return new Entry<>(index - 1, legacyValues.get(key), true);
+            }
+        }
+        return null;
+    }
+
+    private void setEntry(K key, int index, V value, boolean legacy) {
+        entries.set(key, encode(index, value));
+        if (legacy) {
+            legacyIndexes.set(key, null);
+            legacyValues.set(key, null);
+        }
+    }
+
+    public int length() {
+        return keys.size();
+    }
+
+    public boolean contains(K key) {
+        return getEntry(key) != null;
+    }
+
+    public K getKey(int index) {
+        return keys.get(index);
+    }
+
+    public V get(K key) {
+        var entry = getEntry(key);
+        return (entry != null) ? entry.value : null;
+    }
+
+    public V getOrThrow(K key, String msg) {
+        var value = this.get(key);
+        if (value != null) {
+            return value;
+        }
+        Context.revert(msg);
+        return null; // should not reach here, but made compiler happy
+    }
+
+    public void set(K key, V value) {
+        var entry = getEntry(key);
+        if (entry != null) {
+            setEntry(key, entry.index, value, entry.legacy);
+        } else {
+            keys.add(key);
+            setEntry(key, keys.size() - 1, value, false);
+        }
+    }
+
+    public void remove(K key) {
+        var entry = getEntry(key);
+        if (entry == null) {
+            return;
+        }
+        if (entry.legacy) {
+            legacyIndexes.set(key, null);
+            legacyValues.set(key, null);
+        } else {
+            entries.set(key, null);
+        }
+        // pop and swap with the last entry
+        int lastIndex = keys.size() - 1;
+        K lastKey = keys.pop();
+        if (lastIndex != entry.index) {
+            var lastEntry = getEntry(lastKey);
+            keys.set(entry.index, lastKey);
+            // the moved entry is always written in the new format
+            setEntry(lastKey, entry.index, lastEntry.value, lastEntry.legacy);
+        }
+    }
+
+    public void removeAll() {
+        for (int i = length() - 1; i >= 0; i--) {
+            remove(getKey(i));
+        }
+    }
+
+    /**
+     * Migrates the entries of the EnumerableMap of the same id, up to maxEntries keys at a time.
+     * Returns true if all the entries have been migrated.
+     */
+    public boolean migrate(int maxEntries) {
+        if (!migrating) {
+            return true;
+        }
+        int size = keys.size();
+        int start = migrated.getOrDefault(0);
+        int i = start;
+        for (; i < size && i - start < maxEntries; i++) {
+            K key = keys.get(i);
+            V value = legacyValues.get(key);
+            if (value != null) {
+                setEntry(key, i, value, true);
+            }
+        }
+        if (i >= size) {
+            migrated.set(null);
+            return true;
+        }
+        migrated.set(i);
+        return false;
+    }
+}
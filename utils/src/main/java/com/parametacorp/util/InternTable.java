@@ -0,0 +1,76 @@
+/*
+ * Copyright 2024 PARAMETA Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.parametacorp.util;
+
+import score.Context;
+import score.DictDB;
+
+/**
+ * InternTable maps each distinct string to a compact numeric id, so records can store the id
+ * instead of repeating a long string:
+ *   - The id is derived from the hash of the string, and the next id is probed on a collision.
+ *     No global sequence is needed, so interning different strings doesn't contend on a single counter.
+ *   - The id 0 is never assigned, so it can be used as "no value".
+ */
+public class InternTable {
+    // number of the hash bytes used for an id
+    private static final int ID_BYTES = 6;
+
+    private final DictDB<String, Long> ids;
+    private final DictDB<Long, String> values;
+
+    public InternTable(String id) {
+        // string => id
+        this.ids = Context.newDictDB(id + "_ids", Long.class);
+        // id => string
+        this.values = Context.newDictDB(id + "_values", String.class);
+    }
+
+    public Long idOf(String value) {
+        // returns null if value is not interned
+        return ids.get(value);
+    }
+
+    public String resolve(long id) {
+        return values.get(id);
+    }
+
+    /**
+     * Returns true if the id must not be assigned, even though it is not used in this table.
+     */
+    protected boolean isReserved(long id) {
+        return false;
+    }
+
+    public long intern(String value) {
+        Long existing = ids.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        byte[] hash = Context.hash("keccak-256", value.getBytes());
+        long id = 0;
+        for (int i = 0; i < ID_BYTES; i++) {
+            id = (id << 8) | (hash[i] & 0xff);
+        }
+        while (id == 0 || values.get(id) != null || isReserved(id)) {
+            id++;
+        }
+        ids.set(value, id);
+        values.set(id, value);
+        return id;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2024 PARAMETA Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parametacorp.util;
+
+/**
+ * IterableMap is a mapping structure whose keys can be enumerated by index.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public interface IterableMap<K, V> {
+    int length();
+
+    boolean contains(K key);
+
+    K getKey(int index);
+
+    V get(K key);
+
+    void set(K key, V value);
+
+    void remove(K key);
+}
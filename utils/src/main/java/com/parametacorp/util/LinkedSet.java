@@ -0,0 +1,142 @@
+/*
+ * Copyright 2024 PARAMETA Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.parametacorp.util;
+
+import score.Context;
+import score.DictDB;
+import score.VarDB;
+
+/**
+ * LinkedSet has the following properties:
+ *   - Elements are added, removed, and checked for existence in constant time O(1)
+ *   - Elements are enumerated in the insertion order, which is not changed by removals.
+ *   - Each element has a sequence number, which can be used as an opaque cursor for the enumeration.
+ *     A cursor stays valid even after its element is removed, since the removed element keeps
+ *     the link to its predecessor. Resolving such a cursor walks back over the removed elements,
+ *     up to MAX_WALK of them, so a cursor expires if too many elements before it have been removed.
+ *
+ * @param <V> Value type
+ */
+public class LinkedSet<V> {
+    // maximum number of the removed elements walked back over to resolve a cursor
+    static final int MAX_WALK = 64;
+
+    private final DictDB<V, Long> seqs;
+    private final DictDB<Long, V> values;
+    private final DictDB<Long, Long> nexts;
+    private final DictDB<Long, Long> prevs;
+    private final VarDB<Long> head;
+    private final VarDB<Long> tail;
+    private final VarDB<Long> lastSeq;
+    private final VarDB<Integer> size;
+
+    public LinkedSet(String id, Class<V> valueClass) {
+        // value => sequence number
+        this.seqs = Context.newDictDB(id + "_seqs", Long.class);
+        // sequence number => value, removed when the element is removed
+        this.values = Context.newDictDB(id + "_values", valueClass);
+        // sequence number => sequence number of the next element
+        this.nexts = Context.newDictDB(id + "_nexts", Long.class);
+        // sequence number => sequence number of the previous element, kept after removal
+        this.prevs = Context.newDictDB(id + "_prevs", Long.class);
+        this.head = Context.newVarDB(id + "_head", Long.class);
+        this.tail = Context.newVarDB(id + "_tail", Long.class);
+        this.lastSeq = Context.newVarDB(id + "_last", Long.class);
+        this.size = Context.newVarDB(id + "_size", Integer.class);
+    }
+
+    public int length() {
+        return size.getOrDefault(0);
+    }
+
+    public boolean contains(V value) {
+        return seqs.get(value) != null;
+    }
+
+    public V get(long seq) {
+        return values.get(seq);
+    }
+
+    public void add(V value) {
+        if (contains(value)) {
+            return;
+        }
+        long seq = lastSeq.getOrDefault(0L) + 1;
+        long last = tail.getOrDefault(0L);
+        seqs.set(value, seq);
+        values.set(seq, value);
+        if (last != 0) {
+            nexts.set(last, seq);
+            prevs.set(seq, last);
+        } else {
+            head.set(seq);
+        }
+        tail.set(seq);
+        lastSeq.set(seq);
+        size.set(length() + 1);
+    }
+
+    public void remove(V value) {
+        Long seq = seqs.get(value);
+        if (seq == null) {
+            return;
+        }
+        long prev = prevs.getOrDefault(seq, 0L);
+        long next = nexts.getOrDefault(seq, 0L);
+        if (prev != 0) {
+            nexts.set(prev, (next != 0) ? next : null);
+        } else {
+            head.set((next != 0) ? next : null);
+        }
+        if (next != 0) {
+            prevs.set(next, (prev != 0) ? prev : null);
+        } else {
+            tail.set((prev != 0) ? prev : null);
+        }
+        // keep the link to the predecessor, so that the cursors pointing this element remain valid
+        seqs.set(value, null);
+        values.set(seq, null);
+        nexts.set(seq, null);
+        size.set(length() - 1);
+    }
+
+    /**
+     * Returns the sequence number of the element following the cursor, or 0 if there is no more element.
+     * The cursor 0 means the beginning of the set.
+     * Reverts if the cursor cannot be resolved within MAX_WALK removed elements.
+     */
+    public long next(long cursor) {
+        if (cursor <= 0) {
+            return head.getOrDefault(0L);
+        }
+        if (cursor > lastSeq.getOrDefault(0L)) {
+            return 0;
+        }
+        // move back to the closest element which is still in the set
+        long seq = cursor;
+        for (int walked = 0; seq != 0 && values.get(seq) == null; walked++) {
+            if (walked >= MAX_WALK) {
+                Context.revert("cursor expired");
+            }
+            seq = prevs.getOrDefault(seq, 0L);
+        }
+        if (seq == 0) {
+            return head.getOrDefault(0L);
+        }
+        return nexts.getOrDefault(seq, 0L);
+    }
+}
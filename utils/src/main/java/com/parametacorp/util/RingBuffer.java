@@ -0,0 +1,71 @@
+/*
+ * Copyright 2024 PARAMETA Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.parametacorp.util;
+
+import score.ArrayDB;
+import score.Context;
+import score.VarDB;
+
+/**
+ * RingBuffer keeps the last {@code capacity} elements appended to it:
+ *   - Each element gets a sequence number starting from 0, in the order of appending.
+ *   - Once the buffer is full, a new element overwrites the oldest one, so appending is O(1)
+ *     and the storage is bounded.
+ *
+ * @param <V> Value type
+ */
+public class RingBuffer<V> {
+    private final int capacity;
+    private final ArrayDB<V> entries;
+    private final VarDB<Long> total;
+
+    public RingBuffer(String id, Class<V> valueClass, int capacity) {
+        this.capacity = capacity;
+        // array of valueClass, the element of sequence n is at the index (n % capacity)
+        this.entries = Context.newArrayDB(id + "_entries", valueClass);
+        // number of the elements appended so far
+        this.total = Context.newVarDB(id + "_total", Long.class);
+    }
+
+    public long getTotal() {
+        return total.getOrDefault(0L);
+    }
+
+    // returns the sequence number of the oldest element kept in the buffer
+    public long getOldest() {
+        return Math.max(0, getTotal() - capacity);
+    }
+
+    public void add(V value) {
+        long seq = getTotal();
+        if (entries.size() < capacity) {
+            entries.add(value);
+        } else {
+            entries.set((int) (seq % capacity), value);
+        }
+        total.set(seq + 1);
+    }
+
+    public V get(long seq) {
+        // returns null if the element has been overwritten or not appended yet
+        long count = getTotal();
+        if (seq < Math.max(0, count - capacity) || seq >= count) {
+            return null;
+        }
+        return entries.get((int) (seq % capacity));
+    }
+}
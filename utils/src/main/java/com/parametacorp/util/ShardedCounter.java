@@ -0,0 +1,65 @@
+/*
+ * Copyright 2024 PARAMETA Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.parametacorp.util;
+
+import score.Context;
+import score.DictDB;
+
+import java.math.BigInteger;
+
+/**
+ * ShardedCounter spreads a counter over a fixed number of shards:
+ *   - Each update writes only the shard chosen by the hash of the given key,
+ *     so the transactions for different keys do not contend for a single storage entry.
+ *   - The total is the sum of all shards, read in O(shards).
+ * A shard may become negative, but the total is always exact.
+ */
+public class ShardedCounter {
+    private final DictDB<Integer, BigInteger> shards;
+    private final int size;
+
+    public ShardedCounter(String id, int size) {
+        this.shards = Context.newDictDB(id + "_shards", BigInteger.class);
+        this.size = size;
+    }
+
+    private int shardOf(String key) {
+        // FNV-1a over the bytes of the key
+        int hash = 0x811c9dc5;
+        for (byte b : key.getBytes()) {
+            hash ^= (b & 0xff);
+            hash *= 0x01000193;
+        }
+        return (hash & 0x7fffffff) % size;
+    }
+
+    public void add(String key, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        int shard = shardOf(key);
+        shards.set(shard, shards.getOrDefault(shard, BigInteger.ZERO).add(BigInteger.valueOf(delta)));
+    }
+
+    public BigInteger total() {
+        BigInteger total = BigInteger.ZERO;
+        for (int i = 0; i < size; i++) {
+            total = total.add(shards.getOrDefault(i, BigInteger.ZERO));
+        }
+        return total;
+    }
+}
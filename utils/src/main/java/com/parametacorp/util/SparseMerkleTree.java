@@ -0,0 +1,172 @@
+/*
+ * Copyright 2024 PARAMETA Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.parametacorp.util;
+
+import score.Context;
+import score.DictDB;
+import score.VarDB;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * SparseMerkleTree is a Merkle tree of depth 64 over the 64-bit keys:
+ *   - A leaf is the hash of a record, and the empty leaf is 32 zero bytes.
+ *   - A node is keccak-256(left || right), and the empty subtrees are not stored.
+ *   - Updating a leaf rewrites the nodes on its path, so it costs DEPTH reads and writes regardless of the size.
+ *   - Removing a leaf deletes the nodes on its path which become empty, so its proof no longer verifies.
+ * A proof of a leaf consists of a bitmap of the levels whose siblings are not empty, and those siblings
+ * from the leaf level upward. The root is recomputed from the leaf by hashing it with the sibling of
+ * each level, or with the empty subtree of the level if the bit is not set.
+ */
+public class SparseMerkleTree {
+    public static final int DEPTH = 64;
+    private static final String HASH = "keccak-256";
+
+    // the roots of the empty subtrees of each level, which are computed once
+    private static byte[][] emptyNodes;
+
+    private final DictDB<byte[], byte[]> nodes;
+    private final VarDB<byte[]> root;
+
+    public SparseMerkleTree(String id) {
+        // [level, path] => node, the nodes of the empty subtrees are not stored
+        this.nodes = Context.newDictDB(id + "_nodes", byte[].class);
+        this.root = Context.newVarDB(id + "_root", byte[].class);
+    }
+
+    public static long keyOf(String id) {
+        byte[] hash = Context.hash(HASH, id.getBytes());
+        long key = 0;
+        for (int i = 0; i < 8; i++) {
+            key = (key << 8) | (hash[i] & 0xff);
+        }
+        return key;
+    }
+
+    public static byte[] hash(byte[] left, byte[] right) {
+        byte[] msg = new byte[left.length + right.length];
+        System.arraycopy(left, 0, msg, 0, left.length);
+        System.arraycopy(right, 0, msg, left.length, right.length);
+        return Context.hash(HASH, msg);
+    }
+
+    // returns the roots of the empty subtrees of each level
+    private static byte[][] emptyNodes() {
+        if (emptyNodes == null) {
+            byte[][] empty = new byte[DEPTH + 1][];
+            empty[0] = new byte[32];
+            for (int i = 0; i < DEPTH; i++) {
+                empty[i + 1] = hash(empty[i], empty[i]);
+            }
+            emptyNodes = empty;
+        }
+        return emptyNodes;
+    }
+
+    private static byte[] nodeKey(int level, long path) {
+        byte[] key = new byte[9];
+        key[0] = (byte) level;
+        for (int i = 0; i < 8; i++) {
+            key[8 - i] = (byte) (path >>> (i * 8));
+        }
+        return key;
+    }
+
+    public byte[] getRoot() {
+        byte[] value = root.get();
+        return (value != null) ? value : emptyNodes()[DEPTH];
+    }
+
+    public byte[] getLeaf(long key) {
+        return nodes.get(nodeKey(0, key));
+    }
+
+    private void setNode(int level, long path, byte[] node, byte[][] empty) {
+        // the empty subtrees are deleted instead of being stored
+        nodes.set(nodeKey(level, path), Arrays.equals(node, empty[level]) ? null : node);
+    }
+
+    public void update(long key, byte[] leaf) {
+        byte[][] empty = emptyNodes();
+        byte[] node = leaf;
+        setNode(0, key, leaf, empty);
+        for (int level = 0; level < DEPTH; level++) {
+            long path = key >>> level;
+            byte[] sibling = nodes.get(nodeKey(level, path ^ 1));
+            if (sibling == null) {
+                sibling = empty[level];
+            }
+            node = ((path & 1) == 0) ? hash(node, sibling) : hash(sibling, node);
+            if (level + 1 < DEPTH) {
+                setNode(level + 1, path >>> 1, node, empty);
+            }
+        }
+        root.set(node);
+    }
+
+    public void remove(long key) {
+        update(key, emptyNodes()[0]);
+    }
+
+    public static class Proof {
+        // the levels with non-empty siblings
+        private final BigInteger bitmap;
+        // the non-empty siblings from the leaf level upward
+        private final byte[][] siblings;
+
+        public Proof(BigInteger bitmap, byte[][] siblings) {
+            this.bitmap = bitmap;
+            this.siblings = siblings;
+        }
+
+        public BigInteger getBitmap() {
+            return bitmap;
+        }
+
+        public byte[][] getSiblings() {
+            return siblings;
+        }
+    }
+
+    public Proof getProof(long key) {
+        byte[][] siblings = new byte[DEPTH][];
+        BigInteger bitmap = BigInteger.ZERO;
+        int count = 0;
+        for (int level = 0; level < DEPTH; level++) {
+            byte[] sibling = nodes.get(nodeKey(level, (key >>> level) ^ 1));
+            if (sibling != null) {
+                bitmap = bitmap.setBit(level);
+                siblings[count++] = sibling;
+            }
+        }
+        byte[][] proof = new byte[count][];
+        System.arraycopy(siblings, 0, proof, 0, count);
+        return new Proof(bitmap, proof);
+    }
+
+    public static byte[] computeRoot(long key, byte[] leaf, Proof proof) {
+        byte[][] empty = emptyNodes();
+        byte[] node = leaf;
+        int next = 0;
+        for (int level = 0; level < DEPTH; level++) {
+            byte[] sibling = proof.bitmap.testBit(level) ? proof.siblings[next++] : empty[level];
+            node = (((key >>> level) & 1) == 0) ? hash(node, sibling) : hash(sibling, node);
+        }
+        return node;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2024 PARAMETA Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.parametacorp.util;
+
+import score.Context;
+import score.ObjectReader;
+
+/**
+ * VersionTag marks the layout version of a stored record, so the layout can be changed without
+ * migrating the existing records up front:
+ *   - writeObject writes tag(VERSION) as the first element of the record.
+ *   - readObject calls read() first, and reads the rest of the record according to getVersion().
+ *     The records written before the tag have the version 0, and may miss any of the trailing fields.
+ *   - A new field is appended to the record and VERSION is bumped, so readObject reads the fields of
+ *     the version of the record unconditionally, and leaves the fields of the newer versions as the defaults.
+ *   - The records of the old versions are upgraded in memory when read, and written back in the
+ *     current version on the next mutation.
+ * The tag is an invalid UTF-8 sequence, so it is never confused with the leading string field of
+ * an untagged record.
+ */
+public final class VersionTag {
+    private static final byte MARKER = (byte) 0xff;
+
+    private final int version;
+    // the leading field of an untagged record, which has been consumed while reading the tag
+    private final byte[] leading;
+
+    private VersionTag(int version, byte[] leading) {
+        this.version = version;
+        this.leading = leading;
+    }
+
+    public static byte[] tag(int version) {
+        return new byte[]{MARKER, (byte) version};
+    }
+
+    /**
+     * Reads the tag of the record, which must not be newer than the current version.
+     */
+    public static VersionTag read(ObjectReader r, int current) {
+        byte[] bytes = r.readByteArray();
+        if (bytes.length == 2 && bytes[0] == MARKER) {
+            int version = bytes[1] & 0xff;
+            Context.require(version <= current, "Unknown record version");
+            return new VersionTag(version, null);
+        }
+        return new VersionTag(0, bytes);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Reads the leading string field of the record, which follows the tag.
+     */
+    public String readString(ObjectReader r) {
+        return (leading != null) ? new String(leading) : r.readString();
+    }
+}